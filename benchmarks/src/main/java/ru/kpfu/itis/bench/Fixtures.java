@@ -0,0 +1,87 @@
+package ru.kpfu.itis.bench;
+
+import ru.kpfu.itis.model.Bomb;
+import ru.kpfu.itis.model.Explosion;
+import ru.kpfu.itis.model.GameState;
+import ru.kpfu.itis.model.Player;
+import ru.kpfu.itis.net.message.StateMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    static int sideFor(int players) {
+        if (players <= 4) return 15;
+        if (players <= 32) return 41;
+        return 101;
+    }
+
+    static char[][] grid(int width, int height, long seed) {
+        Random random = new Random(seed);
+        char[][] grid = new char[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (y == 0 || x == 0 || y == height - 1 || x == width - 1) grid[y][x] = '#';
+                else if (x % 2 == 0 && y % 2 == 0) grid[y][x] = '#';
+                else grid[y][x] = random.nextDouble() < 0.35 ? '*' : '.';
+            }
+        }
+        return grid;
+    }
+
+    static String gridString(char[][] grid, String delimiter) {
+        StringBuilder sb = new StringBuilder();
+        for (int y = 0; y < grid.length; y++) {
+            if (y > 0) sb.append(delimiter);
+            sb.append(grid[y]);
+        }
+        return sb.toString();
+    }
+
+    static Map<Integer, Player> players(int count, int width, int height, long seed) {
+        Random random = new Random(seed);
+        Map<Integer, Player> players = new HashMap<>();
+        for (int id = 1; id <= count; id++) {
+            players.put(id, new Player(id, "player" + id, 1 + random.nextInt(width - 2), 1 + random.nextInt(height - 2),
+                    random.nextInt(10) > 0, random.nextInt(3), 0));
+        }
+        return players;
+    }
+
+    static List<Bomb> bombs(int count, int width, int height, long seed) {
+        Random random = new Random(seed);
+        List<Bomb> bombs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            bombs.add(new Bomb(1 + random.nextInt(count), 1 + random.nextInt(width - 2), 1 + random.nextInt(height - 2),
+                    1 + random.nextInt(35)));
+        }
+        return bombs;
+    }
+
+    static List<Explosion> explosions(int count, int width, int height, long seed) {
+        Random random = new Random(seed);
+        List<Explosion> explosions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            explosions.add(new Explosion(1 + random.nextInt(width - 2), 1 + random.nextInt(height - 2), 1 + random.nextInt(10)));
+        }
+        return explosions;
+    }
+
+    static StateMessage state(int players) {
+        int side = sideFor(players);
+        return new StateMessage(1000, players(players, side, side, 1), bombs(players, side, side, 2),
+                explosions(players * 3, side, side, 3), gridString(grid(side, side, 4), "/"));
+    }
+
+    static GameState gameState(int players) {
+        int side = sideFor(players);
+        return new GameState(side, side, grid(side, side, 4), 1, "player1")
+                .withEntities(players(players, side, side, 1), bombs(players, side, side, 2), explosions(players * 3, side, side, 3));
+    }
+}
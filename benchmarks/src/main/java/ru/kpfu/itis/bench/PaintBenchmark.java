@@ -0,0 +1,55 @@
+package ru.kpfu.itis.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kpfu.itis.model.GameState;
+import ru.kpfu.itis.ui.GamePanel;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PaintBenchmark {
+    @Param({"4", "100"})
+    public int players;
+
+    private GamePanel panel;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setUp() {
+        GameState state = Fixtures.gameState(players);
+        panel = new GamePanel(() -> state, null);
+        panel.setSize(800, 640);
+        image = new BufferedImage(800, 640, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        panel.paint(graphics);
+        return image;
+    }
+}
@@ -0,0 +1,70 @@
+package ru.kpfu.itis.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kpfu.itis.net.WireFormat;
+import ru.kpfu.itis.net.message.*;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+    @Param({"HELLO", "WELCOME", "START", "INPUT", "STATE", "GAME_OVER", "DELTA", "ACK"})
+    public MessageType type;
+
+    @Param({"TEXT", "BINARY"})
+    public WireFormat format;
+
+    private ByteBuffer frame;
+
+    @Setup
+    public void setUp() {
+        Message message = sample(type);
+        ByteBuffer packet = format.encode(message);
+        if (format == WireFormat.BINARY) {
+            ByteBuffer body = packet.duplicate();
+            while ((body.get() & 0x80) != 0) {
+            }
+            frame = body.slice();
+        } else {
+            frame = packet.duplicate().limit(packet.limit() - 1).slice();
+        }
+    }
+
+    @Benchmark
+    public Message decode() {
+        return format.decode(frame.duplicate());
+    }
+
+    private static Message sample(MessageType type) {
+        return switch (type) {
+            case HELLO -> new HelloMessage("player1", WireFormat.BINARY);
+            case WELCOME -> new WelcomeMessage(1, 15, 13, Fixtures.gridString(Fixtures.grid(15, 13, 4), ","), WireFormat.BINARY);
+            case START -> new StartMessage();
+            case INPUT -> new InputMessage(1, true, false, false, true, true);
+            case STATE -> Fixtures.state(4);
+            case GAME_OVER -> new GameOverMessage(1, "player1");
+            case DELTA -> new DeltaStateMessage(1001, 1000,
+                    List.copyOf(Fixtures.players(2, 15, 13, 1).values()), List.of(3),
+                    Fixtures.bombs(2, 15, 13, 2), List.of(17, 48),
+                    Fixtures.explosions(6, 15, 13, 3), List.of(20), List.of(33, 34));
+            case ACK -> new AckMessage(1000);
+        };
+    }
+}
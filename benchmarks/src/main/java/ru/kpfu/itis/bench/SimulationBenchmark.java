@@ -0,0 +1,71 @@
+package ru.kpfu.itis.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kpfu.itis.model.Simulation;
+import ru.kpfu.itis.model.World;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulationBenchmark {
+    private static final int[] MOVES = {World.UP, World.DOWN, World.LEFT, World.RIGHT};
+
+    @Param({"15x13:4", "101x101:100"})
+    public String board;
+
+    private int width;
+    private int height;
+    private int players;
+    private long seed;
+    private Simulation sim;
+    private int[] inputs;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        String[] parts = board.split("[x:]");
+        width = Integer.parseInt(parts[0]);
+        height = Integer.parseInt(parts[1]);
+        players = Integer.parseInt(parts[2]);
+        Random random = new Random(11);
+        inputs = new int[1 << 16];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = MOVES[random.nextInt(MOVES.length)] | (random.nextInt(40) == 0 ? World.BOMB : 0);
+        }
+        restart();
+    }
+
+    @Benchmark
+    public long step() {
+        if (sim.isGameOver()) restart();
+        World world = sim.world();
+        for (int i = 0; i < world.playerCount(); i++) {
+            sim.postInput(world.playerId(i), inputs[cursor++ & (inputs.length - 1)]);
+        }
+        sim.step();
+        return sim.tick();
+    }
+
+    private void restart() {
+        sim = new Simulation(width, height, players, seed++);
+        for (int i = 0; i < players; i++) {
+            sim.addPlayer("bot" + i);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.kpfu.itis.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kpfu.itis.net.BinaryProtocol;
+import ru.kpfu.itis.net.message.StateMessage;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateSerializeBenchmark {
+    @Param({"4", "32", "256"})
+    public int players;
+
+    private StateMessage state;
+
+    @Setup
+    public void setUp() {
+        state = Fixtures.state(players);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return state.serialize();
+    }
+
+    @Benchmark
+    public ByteBuffer encodeBinary() {
+        return BinaryProtocol.encode(state);
+    }
+}
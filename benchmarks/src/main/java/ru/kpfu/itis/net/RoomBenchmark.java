@@ -0,0 +1,54 @@
+package ru.kpfu.itis.net;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kpfu.itis.net.message.WelcomeMessage;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomBenchmark {
+    @Param({"15x13", "101x101", "255x255"})
+    public String size;
+
+    private GameRoom room;
+    private int width;
+    private int cells;
+    private int cursor;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        String[] parts = size.split("x");
+        width = Integer.parseInt(parts[0]);
+        cells = width * Integer.parseInt(parts[1]);
+        room = new GameRoom(1, new MatchConfig(width, cells / width, 4));
+        cursor = 0;
+    }
+
+    @Benchmark
+    public String encodeGrid() {
+        int cell = cursor++ % cells;
+        room.simulation().clearCell(cell % width, cell / width);
+        return room.encodeGrid();
+    }
+
+    @Benchmark
+    public WelcomeMessage joinRows() {
+        return room.createWelcomeMessage(1, WireFormat.BINARY);
+    }
+}
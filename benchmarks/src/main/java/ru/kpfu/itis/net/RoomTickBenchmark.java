@@ -0,0 +1,154 @@
+package ru.kpfu.itis.net;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kpfu.itis.net.message.AckMessage;
+import ru.kpfu.itis.net.message.InputMessage;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomTickBenchmark {
+    private static final Connection.Listener IGNORE = new Connection.Listener() {
+        @Override
+        public void onFrame(ByteBuffer frame) {
+        }
+
+        @Override
+        public void onClose() {
+        }
+    };
+
+    @Param({"classic", "event"})
+    public String board;
+
+    private final List<Connection> connections = new ArrayList<>();
+    private final List<SocketChannel> clients = new ArrayList<>();
+    private MatchConfig config;
+    private GameServer server;
+    private NioTransport transport;
+    private Selector sink;
+    private GameRoom room;
+    private ClientHandler[] handlers;
+    private InputMessage[] inputs;
+    private int cursor;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        config = switch (board) {
+            case "classic" -> MatchConfig.classic();
+            case "event" -> MatchConfig.event();
+            default -> throw new IllegalArgumentException(board);
+        };
+        server = new GameServer(0, 1, 1, config);
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        BlockingQueue<Connection> accepted = new LinkedBlockingQueue<>();
+        transport = new NioTransport(port, 1, connection -> {
+            accepted.add(connection);
+            return IGNORE;
+        });
+        transport.start();
+        sink = Selector.open();
+        for (int i = 0; i < config.maxPlayers(); i++) {
+            SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", port));
+            client.configureBlocking(false);
+            client.register(sink, SelectionKey.OP_READ);
+            clients.add(client);
+            connections.add(accepted.take());
+        }
+        Thread drain = new Thread(this::drain, "room-tick-sink");
+        drain.setDaemon(true);
+        drain.start();
+
+        Random random = new Random(11);
+        inputs = new InputMessage[1 << 16];
+        for (int i = 0; i < inputs.length; i++) {
+            int move = random.nextInt(4);
+            inputs[i] = new InputMessage(0, move == 0, move == 1, move == 2, move == 3, random.nextInt(40) == 0, 0, 0);
+        }
+        restart();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        transport.stop();
+        sink.close();
+        for (SocketChannel client : clients) {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    public long tick() {
+        if (room.simulation().isGameOver()) restart();
+        for (ClientHandler h : handlers) {
+            room.applyInput(h.playerId(), inputs[cursor++ & (inputs.length - 1)]);
+        }
+        room.tick();
+        AckMessage ack = new AckMessage(room.simulation().tick());
+        for (ClientHandler h : handlers) {
+            h.handle(ack);
+        }
+        return ack.tick();
+    }
+
+    private void restart() {
+        room = new GameRoom(1, config, server.metrics());
+        handlers = new ClientHandler[connections.size()];
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i] = new ClientHandler(server, connections.get(i));
+            handlers[i].attach(room, room.join(handlers[i], "bot" + i));
+            handlers[i].sendWelcome(WireFormat.BINARY);
+        }
+    }
+
+    private void drain() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try {
+            while (sink.isOpen()) {
+                sink.select();
+                for (SelectionKey key : sink.selectedKeys()) {
+                    SocketChannel client = (SocketChannel) key.channel();
+                    int read;
+                    do {
+                        read = client.read(buffer.clear());
+                    } while (read > 0);
+                    if (read < 0) key.cancel();
+                }
+                sink.selectedKeys().clear();
+            }
+        } catch (IOException | ClosedSelectorException ignored) {
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package ru.kpfu.itis.load;
+
+import ru.kpfu.itis.metrics.Histogram;
+import ru.kpfu.itis.net.GameClient;
+import ru.kpfu.itis.net.GameServer;
+import ru.kpfu.itis.net.MatchConfig;
+import ru.kpfu.itis.net.Protocol;
+import ru.kpfu.itis.net.WireFormat;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BotSwarm {
+    private static final long INPUT_PERIOD_MS = 100;
+    private static final long REPORT_PERIOD_MS = 5000;
+    private static final Duration METRICS_TIMEOUT = Duration.ofSeconds(2);
+
+    private final String host;
+    private final int port;
+    private final int bots;
+    private final long durationMs;
+    private final long rampMs;
+    private final WireFormat format;
+    private final List<GameClient.InputField> script;
+
+    private final List<Bot> swarm = new ArrayList<>();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final AtomicLong connectionsLost = new AtomicLong();
+    private final AtomicLong clockSkewed = new AtomicLong();
+    private final Histogram interArrival = new Histogram();
+    private final Histogram latency = new Histogram();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread t = new Thread(r, "bot-swarm");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private GameServer server;
+    private String metricsUrl;
+    private HttpClient http;
+    private long lastFrames;
+    private long lastBytes;
+    private long lastReport;
+
+    BotSwarm(String host, int port, int bots, long durationMs, long rampMs, WireFormat format,
+             List<GameClient.InputField> script) {
+        this.host = host;
+        this.port = port;
+        this.bots = bots;
+        this.durationMs = durationMs;
+        this.rampMs = rampMs;
+        this.format = format;
+        this.script = script;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String host = options.get("host");
+        int port = Integer.parseInt(options.getOrDefault("port", "5555"));
+        int bots = Integer.parseInt(options.getOrDefault("bots", "100"));
+        long duration = Long.parseLong(options.getOrDefault("duration", "30")) * 1000;
+        long ramp = Long.parseLong(options.getOrDefault("ramp", "5"));
+        WireFormat format = WireFormat.valueOf(options.getOrDefault("format", "binary").toUpperCase(Locale.ROOT));
+        List<GameClient.InputField> script = new ArrayList<>();
+        if (options.containsKey("script")) {
+            for (String step : options.get("script").split(",")) {
+                script.add(GameClient.InputField.valueOf(step.trim().toUpperCase(Locale.ROOT)));
+            }
+        }
+
+        BotSwarm swarm = new BotSwarm(host == null ? "localhost" : host, port, bots, duration, ramp, format, script);
+        if (host == null) {
+            MatchConfig config = switch (options.getOrDefault("map", "classic")) {
+                case "classic" -> MatchConfig.classic();
+                case "event" -> MatchConfig.event();
+                default -> throw new IllegalArgumentException("Неизвестная карта: " + options.get("map"));
+            };
+            swarm.server = new GameServer(port, config);
+            swarm.server.start();
+            if (options.containsKey("replays")) {
+                swarm.server.recordReplays(Path.of(options.get("replays")));
+            }
+            if (options.containsKey("metrics-port")) {
+                swarm.server.exposeMetrics(Integer.parseInt(options.get("metrics-port")));
+            }
+        } else {
+            String metricsPort = options.getOrDefault("metrics-port", String.valueOf(port + 1));
+            swarm.metricsUrl = options.getOrDefault("metrics-url", "http://" + host + ":" + metricsPort + "/metrics");
+            swarm.http = HttpClient.newBuilder().connectTimeout(METRICS_TIMEOUT).build();
+        }
+        swarm.run();
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Неверный аргумент: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    void run() throws InterruptedException {
+        long started = System.currentTimeMillis();
+        lastReport = System.nanoTime();
+        scheduler.scheduleAtFixedRate(this::driveInputs, INPUT_PERIOD_MS, INPUT_PERIOD_MS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(() -> report("Промежуточный отчёт"), REPORT_PERIOD_MS, REPORT_PERIOD_MS, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < bots; i++) {
+            Bot bot = new Bot("bot" + i, i);
+            try {
+                bot.client.connect();
+                synchronized (swarm) {
+                    swarm.add(bot);
+                }
+            } catch (Exception e) {
+                connectFailures.incrementAndGet();
+            }
+            if (rampMs > 0) Thread.sleep(rampMs);
+        }
+
+        long left = durationMs - (System.currentTimeMillis() - started);
+        if (left > 0) Thread.sleep(left);
+
+        scheduler.shutdownNow();
+        report("Итоговый отчёт");
+        synchronized (swarm) {
+            for (Bot bot : swarm) {
+                bot.client.close();
+            }
+        }
+        if (server != null) server.stop();
+    }
+
+    private void driveInputs() {
+        synchronized (swarm) {
+            for (Bot bot : swarm) {
+                bot.step();
+            }
+        }
+    }
+
+    private synchronized void report(String title) {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-9, (now - lastReport) / 1e9);
+        long totalFrames = frames.get();
+        long totalBytes = bytes.get();
+        int connected;
+        synchronized (swarm) {
+            connected = swarm.size();
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("== ").append(title).append(" ==\n");
+        sb.append(String.format(Locale.ROOT, "Боты: %d из %d, ошибок подключения: %d, обрывов: %d%n",
+                connected, bots, connectFailures.get(), connectionsLost.get()));
+        sb.append(String.format(Locale.ROOT, "STATE: %.0f кадров/с, %.1f КБ/с (всего %d кадров, %d байт)%n",
+                (totalFrames - lastFrames) / seconds, (totalBytes - lastBytes) / seconds / 1024, totalFrames, totalBytes));
+        sb.append(String.format(Locale.ROOT, "Тик сервера -> кадр у бота, мс: p50 %.1f, p99 %.1f, p99.9 %.1f, макс %.1f%n",
+                millis(latency.percentile(50)), millis(latency.percentile(99)),
+                millis(latency.percentile(99.9)), millis(latency.max())));
+        if (clockSkewed.get() > 0) {
+            sb.append(String.format(Locale.ROOT, "Кадров с часами сервера впереди бота: %d (синхронизируйте часы)%n",
+                    clockSkewed.get()));
+        }
+        sb.append(String.format(Locale.ROOT, "Интервал между кадрами, мс: p50 %.1f, p99 %.1f, p99.9 %.1f, макс %.1f%n",
+                millis(interArrival.percentile(50)), millis(interArrival.percentile(99)),
+                millis(interArrival.percentile(99.9)), millis(interArrival.max())));
+        if (server != null) {
+            appendServer(sb, server.metrics().registry().snapshot());
+        } else if (metricsUrl != null) {
+            try {
+                appendServer(sb, scrape());
+            } catch (IOException e) {
+                sb.append("Метрики сервера недоступны (").append(metricsUrl).append("): ").append(e).append('\n');
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        System.out.print(sb);
+
+        lastFrames = totalFrames;
+        lastBytes = totalBytes;
+        lastReport = now;
+    }
+
+    private static void appendServer(StringBuilder sb, Map<String, Long> values) {
+        sb.append(String.format(Locale.ROOT, "Сервер: комнат %d, соединений %d, опозданий тика %d%n",
+                value(values, "rooms"), value(values, "connections"), value(values, "tick_overruns_total")));
+        sb.append(String.format(Locale.ROOT, "Тик -> ACK, мс: p50 %.1f, p99 %.1f, p99.9 %.1f, макс %.1f%n",
+                millis(value(values, "tick_to_ack_ns_p50")), millis(value(values, "tick_to_ack_ns_p99")),
+                millis(value(values, "tick_to_ack_ns_p999")), millis(value(values, "tick_to_ack_ns_max"))));
+        sb.append(String.format(Locale.ROOT, "Отброшено кадров: %d, отключено медленных: %d, очередь: %d кадров / %d байт%n",
+                value(values, "dropped_frames_total"), value(values, "slow_disconnects_total"),
+                value(values, "outbound_queue_depth"), value(values, "outbound_queued_bytes")));
+    }
+
+    private static long value(Map<String, Long> values, String name) {
+        return values.getOrDefault(name, 0L);
+    }
+
+    private Map<String, Long> scrape() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(metricsUrl)).timeout(METRICS_TIMEOUT).build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) throw new IOException("HTTP " + response.statusCode());
+        Map<String, Long> values = new HashMap<>();
+        for (String line : response.body().split("\n")) {
+            int space = line.lastIndexOf(' ');
+            if (line.startsWith("#") || space < 0) continue;
+            String name = line.substring(0, space);
+            int labels = name.indexOf("{quantile=\"");
+            if (labels >= 0) {
+                String suffix = switch (name.substring(labels + 11, name.length() - 2)) {
+                    case "0.5" -> "_p50";
+                    case "0.99" -> "_p99";
+                    case "0.999" -> "_p999";
+                    default -> null;
+                };
+                if (suffix == null) continue;
+                name = name.substring(0, labels) + suffix;
+            } else if (name.indexOf('{') >= 0) {
+                continue;
+            }
+            try {
+                values.put(name, Long.parseLong(line.substring(space + 1)));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return values;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private class Bot implements GameClient.Listener {
+        private final GameClient client;
+        private int step;
+        private long lastFrame;
+
+        Bot(String name, int offset) {
+            this.client = new GameClient(host, port, name, format);
+            client.requestServerTime();
+            this.step = offset;
+            client.setListener(this);
+        }
+
+        void step() {
+            GameClient.InputField next;
+            if (script.isEmpty()) {
+                GameClient.InputField[] fields = GameClient.InputField.values();
+                next = fields[ThreadLocalRandom.current().nextInt(fields.length)];
+            } else {
+                next = script.get(step++ % script.size());
+            }
+            for (GameClient.InputField field : GameClient.InputField.values()) {
+                client.setInput(field, field == next);
+            }
+        }
+
+        @Override
+        public void onStateReceived(long tick, int frameBytes, long serverTime) {
+            long now = System.nanoTime();
+            if (lastFrame != 0) interArrival.record(now - lastFrame);
+            lastFrame = now;
+            if (serverTime > 0) {
+                long delay = Protocol.clockMicros() - serverTime;
+                if (delay >= 0) latency.record(delay * 1000);
+                else clockSkewed.incrementAndGet();
+            }
+            frames.incrementAndGet();
+            bytes.addAndGet(frameBytes);
+        }
+
+        @Override
+        public void onConnectionLost() {
+            connectionsLost.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.kpfu.itis.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ru.kpfu.itis.ClientState")
+@Label("Применение состояния")
+@Category({"Bomberman", "Клиент"})
+public class ClientStateEvent extends Event {
+    @Label("Тик")
+    public long tick;
+
+    @Label("Дельта")
+    public boolean delta;
+
+    @Label("Размер")
+    @DataAmount
+    public int bytes;
+}
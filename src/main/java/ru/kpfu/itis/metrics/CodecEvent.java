@@ -0,0 +1,25 @@
+package ru.kpfu.itis.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ru.kpfu.itis.Codec")
+@Label("Кодирование сообщения")
+@Category({"Bomberman", "Протокол"})
+public class CodecEvent extends Event {
+    @Label("Операция")
+    public String operation;
+
+    @Label("Формат")
+    public String format;
+
+    @Label("Тип сообщения")
+    public String messageType;
+
+    @Label("Размер")
+    @DataAmount
+    public int bytes;
+}
@@ -0,0 +1,76 @@
+package ru.kpfu.itis.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class Histogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(index(value));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+        }
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    public long sum() {
+        return sum.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long n = total.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    public long percentile(double percentile) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(highestEquivalent(i), max.get());
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    private static int index(long value) {
+        if (value < 2 * SUB_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_COUNT + (int) (value >>> shift);
+    }
+
+    private static long highestEquivalent(int index) {
+        if (index < 2 * SUB_COUNT) return index;
+        int shift = index / SUB_COUNT - 1;
+        long lowest = (long) (index % SUB_COUNT + SUB_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,91 @@
+package ru.kpfu.itis.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+public class MetricsMBean implements DynamicMBean {
+    private final MetricsRegistry registry;
+    private ObjectName name;
+    private volatile MBeanInfo info;
+    private volatile int infoSize;
+
+    public MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void register(String objectName) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName candidate = new ObjectName(objectName);
+        if (server.isRegistered(candidate)) server.unregisterMBean(candidate);
+        server.registerMBean(this, candidate);
+        name = candidate;
+    }
+
+    public void unregister() {
+        if (name == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            System.err.println("Не удалось снять MBean " + name + ": " + e.getMessage());
+        }
+        name = null;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Long value = registry.value(attribute);
+        if (value == null) throw new AttributeNotFoundException(attribute);
+        return value;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Метрики доступны только для чтения: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            Long value = registry.value(attribute);
+            if (value != null) list.add(new Attribute(attribute, value));
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        MBeanInfo cached = info;
+        if (cached != null && infoSize == registry.size()) return cached;
+        List<String> names = registry.names();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[names.size()];
+        int i = 0;
+        for (String key : names) {
+            attributes[i++] = new MBeanAttributeInfo(key, "long", key, true, false, false);
+        }
+        cached = new MBeanInfo(getClass().getName(), "Метрики сервера", attributes, null, null, null);
+        infoSize = names.size();
+        info = cached;
+        return cached;
+    }
+}
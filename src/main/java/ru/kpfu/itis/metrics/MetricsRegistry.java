@@ -0,0 +1,129 @@
+package ru.kpfu.itis.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+public class MetricsRegistry {
+    private static final double[] QUANTILES = {50, 90, 99, 99.9};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+    private static final String[] SNAPSHOT_SUFFIXES = {"_count", "_mean", "_p50", "_p99", "_p999", "_max"};
+
+    private final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private record Family(String label, Supplier<Map<String, Long>> values) {
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public void family(String name, String label, Supplier<Map<String, Long>> values) {
+        families.put(name, new Family(label, values));
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            for (String suffix : SNAPSHOT_SUFFIXES) {
+                values.put(entry.getKey() + suffix, histogramValue(entry.getValue(), suffix));
+            }
+        }
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().sum());
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+        return values;
+    }
+
+    public Long value(String name) {
+        LongAdder counter = counters.get(name);
+        if (counter != null) return counter.sum();
+        LongSupplier gauge = gauges.get(name);
+        if (gauge != null) return gauge.getAsLong();
+        for (String suffix : SNAPSHOT_SUFFIXES) {
+            if (!name.endsWith(suffix)) continue;
+            Histogram h = histograms.get(name.substring(0, name.length() - suffix.length()));
+            if (h != null) return histogramValue(h, suffix);
+        }
+        return null;
+    }
+
+    public List<String> names() {
+        List<String> names = new ArrayList<>(size());
+        for (String histogram : histograms.keySet()) {
+            for (String suffix : SNAPSHOT_SUFFIXES) {
+                names.add(histogram + suffix);
+            }
+        }
+        names.addAll(counters.keySet());
+        names.addAll(gauges.keySet());
+        return names;
+    }
+
+    public int size() {
+        return histograms.size() * SNAPSHOT_SUFFIXES.length + counters.size() + gauges.size();
+    }
+
+    private static long histogramValue(Histogram h, String suffix) {
+        return switch (suffix) {
+            case "_count" -> h.count();
+            case "_mean" -> (long) h.mean();
+            case "_p50" -> h.percentile(50);
+            case "_p99" -> h.percentile(99);
+            case "_p999" -> h.percentile(99.9);
+            default -> h.max();
+        };
+    }
+
+    public String render() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram h = entry.getValue();
+            String name = entry.getKey();
+            sb.append("# TYPE ").append(name).append(" summary\n");
+            for (int i = 0; i < QUANTILES.length; i++) {
+                sb.append(name).append("{quantile=\"").append(QUANTILE_LABELS[i]).append("\"} ")
+                        .append(h.percentile(QUANTILES[i])).append('\n');
+            }
+            sb.append(name).append("_sum ").append(h.sum()).append('\n');
+            sb.append(name).append("_count ").append(h.count()).append('\n');
+            sb.append(name).append("_max ").append(h.max()).append('\n');
+        }
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            sb.append("# TYPE ").append(entry.getKey()).append(" counter\n");
+            sb.append(entry.getKey()).append(' ').append(entry.getValue().sum()).append('\n');
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            sb.append("# TYPE ").append(entry.getKey()).append(" gauge\n");
+            sb.append(entry.getKey()).append(' ').append(entry.getValue().getAsLong()).append('\n');
+        }
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            Family family = entry.getValue();
+            sb.append("# TYPE ").append(entry.getKey()).append(" counter\n");
+            for (Map.Entry<String, Long> value : family.values().get().entrySet()) {
+                sb.append(entry.getKey()).append('{').append(family.label()).append("=\"").append(value.getKey())
+                        .append("\"} ").append(value.getValue()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,20 @@
+package ru.kpfu.itis.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ru.kpfu.itis.Paint")
+@Label("Отрисовка кадра")
+@Category({"Bomberman", "Клиент"})
+public class PaintEvent extends Event {
+    @Label("Ширина")
+    public int width;
+
+    @Label("Высота")
+    public int height;
+
+    @Label("Экран")
+    public String screen;
+}
@@ -0,0 +1,32 @@
+package ru.kpfu.itis.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ru.kpfu.itis.Send")
+@Label("Противодавление очереди отправки")
+@Category({"Bomberman", "Сервер"})
+public class SendEvent extends Event {
+    @Label("Адрес")
+    public String peer;
+
+    @Label("Причина")
+    public String reason;
+
+    @Label("Размер кадра")
+    @DataAmount
+    public int bytes;
+
+    @Label("Только последний")
+    public boolean latest;
+
+    @Label("Кадров в очереди")
+    public int queueDepth;
+
+    @Label("Байт в очереди")
+    @DataAmount
+    public int queuedBytes;
+}
@@ -0,0 +1,20 @@
+package ru.kpfu.itis.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ru.kpfu.itis.TickPhase")
+@Label("Фаза тика")
+@Category({"Bomberman", "Сервер"})
+public class TickPhaseEvent extends Event {
+    @Label("Комната")
+    public int room;
+
+    @Label("Тик")
+    public long tick;
+
+    @Label("Фаза")
+    public String phase;
+}
@@ -0,0 +1,58 @@
+package ru.kpfu.itis.model;
+
+public class FireMap {
+    private final int width;
+    private final short[] ttl;
+    private final int[] burning;
+    private int count;
+
+    public FireMap(int width, int height) {
+        this.width = width;
+        this.ttl = new short[width * height];
+        this.burning = new int[ttl.length];
+    }
+
+    public void ignite(int cell, int value) {
+        if (ttl[cell] == 0) {
+            burning[count++] = cell;
+        }
+        if (value > ttl[cell]) ttl[cell] = (short) value;
+    }
+
+    public void tick() {
+        int i = 0;
+        while (i < count) {
+            int cell = burning[i];
+            if (--ttl[cell] > 0) {
+                i++;
+                continue;
+            }
+            int last = burning[--count];
+            burning[i] = last;
+        }
+    }
+
+    public int ttl(int cell) {
+        return ttl[cell];
+    }
+
+    public boolean isBurning(int cell) {
+        return ttl[cell] > 0;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int cellAt(int index) {
+        return burning[index];
+    }
+
+    public int x(int cell) {
+        return cell % width;
+    }
+
+    public int y(int cell) {
+        return cell / width;
+    }
+}
@@ -1,51 +1,125 @@
 package ru.kpfu.itis.model;
 
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class GameState {
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    private static final int[] NONE = new int[0];
+
+    private final long version;
     private final int width;
     private final int height;
     private final int tileSize = 48;
-    private char[][] grid;
-    private Map<Integer, Player> players = new HashMap<>();
-    private List<Bomb> bombs = new ArrayList<>();
-    private List<Explosion> explosions = new ArrayList<>();
-    private int ownPlayerId;
-    private String playerName;
-    private int selfBombs;
-    private boolean gameOver;
-    private Integer winnerId;
-    private String winnerName;
+    private final byte[] cells;
+    private final Map<Integer, Player> players;
+    private final int[] bombCells;
+    private final int[] explosionCells;
+    private final Map<Integer, Position> positions;
+    private final boolean moving;
+    private final int ownPlayerId;
+    private final String playerName;
+    private final boolean gameOver;
+    private final Integer winnerId;
+    private final String winnerName;
 
     public GameState(int width, int height, char[][] grid, int ownPlayerId, String playerName) {
+        this(width, height, flatten(width, height, grid), ownPlayerId, playerName);
+    }
+
+    public GameState(int width, int height, byte[] cells, int ownPlayerId, String playerName) {
+        this(VERSIONS.incrementAndGet(), width, height, cells, Map.of(), NONE, NONE, Map.of(), false,
+                ownPlayerId, playerName, false, null, null);
+    }
+
+    private GameState(long version, int width, int height, byte[] cells, Map<Integer, Player> players,
+                      int[] bombCells, int[] explosionCells, Map<Integer, Position> positions, boolean moving,
+                      int ownPlayerId, String playerName, boolean gameOver, Integer winnerId, String winnerName) {
+        if (cells.length != width * height) {
+            throw new IllegalArgumentException("Размер карты не совпадает: " + cells.length + " != " + width + "x" + height);
+        }
+        this.version = version;
         this.width = width;
         this.height = height;
-        this.grid = grid;
+        this.cells = cells;
+        this.players = players;
+        this.bombCells = bombCells;
+        this.explosionCells = explosionCells;
+        this.positions = positions;
+        this.moving = moving;
         this.ownPlayerId = ownPlayerId;
         this.playerName = playerName;
-        this.gameOver = false;
-        this.winnerId = null;
-        this.winnerName = null;
+        this.gameOver = gameOver;
+        this.winnerId = winnerId;
+        this.winnerName = winnerName;
+    }
+
+    private static byte[] flatten(int width, int height, char[][] grid) {
+        byte[] cells = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                cells[y * width + x] = (byte) grid[y][x];
+            }
+        }
+        return cells;
+    }
+
+    private GameState with(byte[] cells, Map<Integer, Player> players, int[] bombCells, int[] explosionCells) {
+        return new GameState(VERSIONS.incrementAndGet(), width, height, cells, players, bombCells, explosionCells,
+                positions, moving, ownPlayerId, playerName, gameOver, winnerId, winnerName);
+    }
+
+    public GameState withGrid(byte[] cells) {
+        return with(cells, players, bombCells, explosionCells);
+    }
+
+    public GameState withClearedCells(List<Integer> cleared) {
+        if (cleared.isEmpty()) return this;
+        byte[] next = cells.clone();
+        for (int cell : cleared) {
+            if (cell >= 0 && cell < next.length) next[cell] = '.';
+        }
+        return withGrid(next);
     }
 
-    public synchronized void applySnapshot(Map<Integer, Player> players, List<Bomb> bombs, List<Explosion> explosions) {
-        this.players = new HashMap<>(players);
-        this.bombs = new ArrayList<>(bombs);
-        this.explosions = new ArrayList<>(explosions);
+    public GameState withEntities(Map<Integer, Player> players, Collection<Bomb> bombs, Collection<Explosion> explosions) {
+        int[] bombCells = new int[bombs.size()];
+        int i = 0;
+        for (Bomb b : bombs) {
+            bombCells[i++] = b.y() * width + b.x();
+        }
+        int[] explosionCells = new int[explosions.size()];
+        i = 0;
+        for (Explosion e : explosions) {
+            explosionCells[i++] = e.y() * width + e.x();
+        }
+        return with(cells, Collections.unmodifiableMap(new HashMap<>(players)), bombCells, explosionCells);
+    }
+
+    public GameState withOwnPosition(int x, int y) {
         Player self = players.get(ownPlayerId);
-        selfBombs = self != null ? self.bombsAvailable() : 0;
+        if (self == null || (self.x() == x && self.y() == y)) return this;
+        Map<Integer, Player> next = new HashMap<>(players);
+        next.put(ownPlayerId, new Player(self.id(), self.name(), x, y, self.alive(), self.bombsAvailable(), self.inputTick()));
+        return with(cells, Collections.unmodifiableMap(next), bombCells, explosionCells);
     }
 
-    public synchronized GameState copy() {
-        GameState state = new GameState(width, height, grid, ownPlayerId, playerName);
-        state.applySnapshot(players, bombs, explosions);
-        state.gameOver = this.gameOver;
-        state.winnerId = this.winnerId;
-        state.winnerName = this.winnerName;
-        return state;
+    public GameState withPositions(Map<Integer, Position> positions, boolean moving) {
+        return new GameState(version, width, height, cells, players, bombCells, explosionCells,
+                positions, moving, ownPlayerId, playerName, gameOver, winnerId, winnerName);
+    }
+
+    public GameState withGameOver(Integer winnerId, String winnerName) {
+        return new GameState(VERSIONS.incrementAndGet(), width, height, cells, players, bombCells, explosionCells,
+                positions, moving, ownPlayerId, playerName, true, winnerId, winnerName);
+    }
+
+    public long version() {
+        return version;
     }
 
     public int width() {
@@ -60,24 +134,55 @@ public class GameState {
         return tileSize;
     }
 
-    public synchronized char cellAt(int x, int y) {
-        return grid[y][x];
+    public char cellAt(int x, int y) {
+        return (char) cells[y * width + x];
+    }
+
+    public boolean isAnimating() {
+        return moving || bombCells.length > 0 || explosionCells.length > 0;
+    }
+
+    public Position positionOf(Player player) {
+        Position position = positions.get(player.id());
+        return position != null ? position : new Position(player.x(), player.y());
     }
 
-    public synchronized void updateGrid(char[][] newGrid) {
-        this.grid = newGrid;
+    public boolean canStep(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return false;
+        int cell = y * width + x;
+        if (cells[cell] == '#' || cells[cell] == '*') return false;
+        for (int bomb : bombCells) {
+            if (bomb == cell) return false;
+        }
+        return true;
     }
 
-    public synchronized Map<Integer, Player> players() {
-        return new HashMap<>(players);
+    public Map<Integer, Player> players() {
+        return players;
     }
 
-    public synchronized List<Bomb> bombs() {
-        return new ArrayList<>(bombs);
+    public int bombCount() {
+        return bombCells.length;
     }
 
-    public synchronized List<Explosion> explosions() {
-        return new ArrayList<>(explosions);
+    public int bombX(int i) {
+        return bombCells[i] % width;
+    }
+
+    public int bombY(int i) {
+        return bombCells[i] / width;
+    }
+
+    public int explosionCount() {
+        return explosionCells.length;
+    }
+
+    public int explosionX(int i) {
+        return explosionCells[i] % width;
+    }
+
+    public int explosionY(int i) {
+        return explosionCells[i] / width;
     }
 
     public int ownPlayerId() {
@@ -89,25 +194,19 @@ public class GameState {
     }
 
     public int selfBombs() {
-        return selfBombs;
-    }
-
-    public synchronized void setGameOver(Integer winnerId, String winnerName) {
-        this.gameOver = true;
-        this.winnerId = winnerId;
-        this.winnerName = winnerName;
+        Player self = players.get(ownPlayerId);
+        return self != null ? self.bombsAvailable() : 0;
     }
 
-    public synchronized boolean isGameOver() {
+    public boolean isGameOver() {
         return gameOver;
     }
 
-    public synchronized Integer winnerId() {
+    public Integer winnerId() {
         return winnerId;
     }
 
-    public synchronized String winnerName() {
+    public String winnerName() {
         return winnerName;
     }
 }
-
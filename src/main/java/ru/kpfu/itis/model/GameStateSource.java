@@ -0,0 +1,8 @@
+package ru.kpfu.itis.model;
+
+public interface GameStateSource {
+    GameState getStateSnapshot();
+
+    default void setRepaintListener(Runnable listener) {
+    }
+}
@@ -0,0 +1,74 @@
+package ru.kpfu.itis.model;
+
+import java.util.Arrays;
+
+public class Occupancy {
+    private final int width;
+    private final int height;
+    private final long[] bombs;
+    private final long[] blast;
+    private final short[] players;
+
+    public Occupancy(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int cells = width * height;
+        this.bombs = new long[(cells + 63) >>> 6];
+        this.blast = new long[bombs.length];
+        this.players = new short[cells];
+    }
+
+    public int cell(int x, int y) {
+        return y * width + x;
+    }
+
+    public boolean inside(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    public boolean hasBomb(int cell) {
+        return get(bombs, cell);
+    }
+
+    public void setBomb(int cell, boolean present) {
+        set(bombs, cell, present);
+    }
+
+    public boolean inBlast(int cell) {
+        return get(blast, cell);
+    }
+
+    public void markBlast(int cell) {
+        set(blast, cell, true);
+    }
+
+    public void clearBlast() {
+        Arrays.fill(blast, 0L);
+    }
+
+    public int playersAt(int cell) {
+        return players[cell];
+    }
+
+    public void addPlayer(int cell) {
+        players[cell]++;
+    }
+
+    public void removePlayer(int cell) {
+        if (players[cell] > 0) players[cell]--;
+    }
+
+    public void movePlayer(int from, int to) {
+        removePlayer(from);
+        addPlayer(to);
+    }
+
+    private static boolean get(long[] bits, int cell) {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    private static void set(long[] bits, int cell, boolean value) {
+        if (value) bits[cell >>> 6] |= 1L << cell;
+        else bits[cell >>> 6] &= ~(1L << cell);
+    }
+}
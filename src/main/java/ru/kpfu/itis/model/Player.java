@@ -1,5 +1,5 @@
 package ru.kpfu.itis.model;
 
-public record Player(int id, String name, int x, int y, boolean alive, int bombsAvailable) {
+public record Player(int id, String name, int x, int y, boolean alive, int bombsAvailable, int inputTick) {
 }
 
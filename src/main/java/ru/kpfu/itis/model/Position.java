@@ -0,0 +1,4 @@
+package ru.kpfu.itis.model;
+
+public record Position(double x, double y) {
+}
@@ -0,0 +1,512 @@
+package ru.kpfu.itis.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class Simulation {
+    public enum Phase {PLAYERS, BOMBS, EXPLOSIONS, GAME_OVER}
+
+    public interface PhaseListener {
+        default void phaseStarted(Phase phase) {
+        }
+
+        void onPhase(Phase phase, long nanos);
+    }
+
+    public interface InputListener {
+        void onInput(int playerId, int flags);
+    }
+
+    private static final int BLAST_POWER = 3;
+    private static final int BOMB_TIMER = 35;
+    private static final int FIRE_TTL = 10;
+    public static final int MOVE_COOLDOWN = 2;
+    private static final int START_BOMBS = 2;
+    private static final int[] DX = {1, -1, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1};
+
+    private final int width;
+    private final int height;
+    private final int maxPlayers;
+    private final long seed;
+    private final World world;
+    private final SpawnAllocator spawns;
+    private final Map<Integer, Integer> spawnSlots = new HashMap<>();
+    private final char[][] grid;
+    private final Occupancy occupancy;
+    private final FireMap fire;
+    private final int[] blastCells = new int[1 + 4 * BLAST_POWER];
+    private final int[] chain;
+    private int chainLength;
+    private final long[] clearedMask;
+    private int[] clearedLog = new int[64];
+    private int clearedCount;
+    private long tick;
+    private boolean gameOver;
+    private int winnerId;
+    private String winnerName;
+    private PhaseListener phaseListener;
+    private InputListener inputListener;
+
+    public Simulation(int width, int height, int maxPlayers, long seed) {
+        this.width = width;
+        this.height = height;
+        this.maxPlayers = maxPlayers;
+        this.seed = seed;
+        this.world = new World(width, height, maxPlayers);
+        this.spawns = new SpawnAllocator(width, height, maxPlayers);
+        this.occupancy = new Occupancy(width, height);
+        this.fire = new FireMap(width, height);
+        this.chain = new int[width * height];
+        this.clearedMask = new long[(width * height + 63) >>> 6];
+        this.grid = generateMap(new Random(seed));
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public long tick() {
+        return tick;
+    }
+
+    public World world() {
+        return world;
+    }
+
+    public FireMap fire() {
+        return fire;
+    }
+
+    public int cell(int x, int y) {
+        return occupancy.cell(x, y);
+    }
+
+    public char cellAt(int x, int y) {
+        return grid[y][x];
+    }
+
+    public char[] row(int y) {
+        return grid[y];
+    }
+
+    public int[] clearedLog() {
+        return clearedLog;
+    }
+
+    public int clearedCount() {
+        return clearedCount;
+    }
+
+    public long[] clearedMask() {
+        return clearedMask;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public int winnerId() {
+        return winnerId;
+    }
+
+    public String winnerName() {
+        return winnerName;
+    }
+
+    public boolean canJoin() {
+        return !gameOver && world.playerCount() < maxPlayers;
+    }
+
+    public int addPlayer(String name) {
+        if (!canJoin()) return -1;
+        int playerId = world.freeId();
+        if (playerId < 0) return -1;
+        int slot = spawns.acquire();
+        if (slot < 0) return -1;
+        int x = spawns.x(slot);
+        int y = spawns.y(slot);
+        spawnSlots.put(playerId, slot);
+        world.addPlayer(playerId, name, x, y, START_BOMBS);
+        occupancy.addPlayer(occupancy.cell(x, y));
+        return playerId;
+    }
+
+    public void removePlayer(int playerId) {
+        Integer slot = spawnSlots.remove(playerId);
+        if (slot != null) spawns.release(slot);
+        int i = world.indexOf(playerId);
+        if (i < 0) return;
+        occupancy.removePlayer(occupancy.cell(world.x(i), world.y(i)));
+        world.removePlayer(playerId);
+    }
+
+    public boolean postInput(int playerId, int flags) {
+        return world.postInput(playerId, flags, 0, 0);
+    }
+
+    public boolean postInput(int playerId, int flags, int seq, int tick) {
+        return world.postInput(playerId, flags, seq, tick);
+    }
+
+    public void restoreInput(int playerId, int flags) {
+        int i = world.indexOf(playerId);
+        if (i >= 0) world.restoreInput(i, flags);
+    }
+
+    public void setPhaseListener(PhaseListener phaseListener) {
+        this.phaseListener = phaseListener;
+    }
+
+    public void setInputListener(InputListener inputListener) {
+        this.inputListener = inputListener;
+    }
+
+    public long stateHash() {
+        long h = tick * 31 + clearedCount;
+        for (int i = 0; i < world.playerCount(); i++) {
+            h = h * 31 + world.playerId(i);
+            h = h * 31 + occupancy.cell(world.x(i), world.y(i));
+            h = h * 31 + (world.alive(i) ? 1 : 0);
+            h = h * 31 + world.bombsAvailable(i);
+        }
+        for (int i = 0; i < world.bombCount(); i++) {
+            h = h * 31 + world.bombCell(i);
+            h = h * 31 + world.bombTimer(i);
+        }
+        for (int i = 0; i < fire.count(); i++) {
+            h = h * 31 + fire.cellAt(i);
+        }
+        return h;
+    }
+
+    public int stateSize() {
+        int size = 8 + 1 + 4 + 2 + 4 + clearedMask.length * 8 + 4 + 4 + 4;
+        if (winnerName != null) size += winnerName.length() * 3;
+        for (int i = 0; i < world.playerCount(); i++) {
+            size += 4 + 2 + 2 + 2 + 1 + 4 + 8 + 2 + world.name(i).length() * 3;
+        }
+        return size + world.bombCount() * 12 + fire.count() * 6;
+    }
+
+    public void writeState(ByteBuffer out) {
+        out.putLong(tick);
+        out.put((byte) (gameOver ? 1 : 0));
+        out.putInt(winnerId);
+        putString(out, winnerName);
+        out.putInt(clearedCount);
+        for (long bits : clearedMask) {
+            out.putLong(bits);
+        }
+        out.putInt(world.playerCount());
+        for (int i = 0; i < world.playerCount(); i++) {
+            out.putInt(world.playerId(i));
+            out.putShort((short) spawnSlots.get(world.playerId(i)).intValue());
+            out.putShort((short) world.x(i));
+            out.putShort((short) world.y(i));
+            out.put((byte) (world.alive(i) ? 1 : 0));
+            out.putInt(world.bombsAvailable(i));
+            out.putLong(world.lastMoveTick(i));
+            putString(out, world.name(i));
+        }
+        out.putInt(world.bombCount());
+        for (int i = 0; i < world.bombCount(); i++) {
+            out.putInt(world.bombCell(i));
+            out.putInt(world.bombOwner(i));
+            out.putInt(world.bombTimer(i));
+        }
+        out.putInt(fire.count());
+        for (int i = 0; i < fire.count(); i++) {
+            int cell = fire.cellAt(i);
+            out.putInt(cell);
+            out.putShort((short) fire.ttl(cell));
+        }
+    }
+
+    public void restoreState(ByteBuffer in) {
+        if (tick != 0 || world.playerCount() != 0) throw new IllegalStateException("Состояние восстанавливается только в новую симуляцию");
+        tick = in.getLong();
+        gameOver = in.get() != 0;
+        winnerId = in.getInt();
+        winnerName = getString(in);
+        int cleared = in.getInt();
+        for (int i = 0; i < clearedMask.length; i++) {
+            clearedMask[i] = in.getLong();
+        }
+        for (int cell = 0; cell < width * height; cell++) {
+            if ((clearedMask[cell >>> 6] & (1L << cell)) == 0) continue;
+            grid[cell / width][cell % width] = '.';
+            if (clearedCount == clearedLog.length) clearedLog = Arrays.copyOf(clearedLog, clearedCount * 2);
+            clearedLog[clearedCount++] = cell;
+        }
+        if (clearedCount != cleared) throw new IllegalStateException("Неверное число разрушенных блоков в снимке");
+        int players = in.getInt();
+        for (int k = 0; k < players; k++) {
+            int playerId = in.getInt();
+            int slot = in.getShort();
+            int x = in.getShort();
+            int y = in.getShort();
+            boolean isAlive = in.get() != 0;
+            int bombs = in.getInt();
+            long lastMove = in.getLong();
+            String name = getString(in);
+            spawns.take(slot);
+            spawnSlots.put(playerId, slot);
+            int i = world.addPlayer(playerId, name, x, y, bombs);
+            world.move(i, x, y, lastMove);
+            if (!isAlive) world.kill(i);
+            occupancy.addPlayer(occupancy.cell(x, y));
+        }
+        int bombs = in.getInt();
+        for (int k = 0; k < bombs; k++) {
+            int cell = in.getInt();
+            int owner = in.getInt();
+            world.addBomb(owner, cell, in.getInt());
+            occupancy.setBomb(cell, true);
+        }
+        int burning = in.getInt();
+        for (int k = 0; k < burning; k++) {
+            int cell = in.getInt();
+            fire.ignite(cell, in.getShort());
+        }
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public void step() {
+        tick++;
+        PhaseListener listener = phaseListener;
+        if (listener == null) {
+            updatePlayers();
+            updateBombs();
+            updateExplosions();
+            checkGameOver();
+            return;
+        }
+        listener.phaseStarted(Phase.PLAYERS);
+        long t0 = System.nanoTime();
+        updatePlayers();
+        long t1 = System.nanoTime();
+        listener.onPhase(Phase.PLAYERS, t1 - t0);
+        listener.phaseStarted(Phase.BOMBS);
+        updateBombs();
+        long t2 = System.nanoTime();
+        listener.onPhase(Phase.BOMBS, t2 - t1);
+        listener.phaseStarted(Phase.EXPLOSIONS);
+        updateExplosions();
+        long t3 = System.nanoTime();
+        listener.onPhase(Phase.EXPLOSIONS, t3 - t2);
+        listener.phaseStarted(Phase.GAME_OVER);
+        checkGameOver();
+        listener.onPhase(Phase.GAME_OVER, System.nanoTime() - t3);
+    }
+
+    public void run(long ticks) {
+        for (long i = 0; i < ticks && !gameOver; i++) {
+            step();
+        }
+    }
+
+    private void updatePlayers() {
+        for (int i = 0; i < world.playerCount(); i++) {
+            if (!world.alive(i)) continue;
+            if (tick - world.lastMoveTick(i) >= MOVE_COOLDOWN) applyInputs(i);
+            world.acknowledgeInput(i, tick);
+        }
+    }
+
+    private void applyInputs(int i) {
+        boolean queued = false;
+        boolean moved = false;
+        while (world.nextInput(i, tick)) {
+            queued = true;
+            int input = world.lastInput(i);
+            if (inputListener != null) inputListener.onInput(world.playerId(i), input);
+            if (!moved) moved = movePlayer(i, input);
+            if ((input & World.BOMB) != 0) placeBomb(i);
+        }
+        if (!queued) movePlayer(i, world.heldInput(i));
+    }
+
+    private boolean movePlayer(int i, int input) {
+        int dx = 0;
+        int dy = 0;
+        if ((input & World.UP) != 0) dy = -1;
+        else if ((input & World.DOWN) != 0) dy = 1;
+        else if ((input & World.LEFT) != 0) dx = -1;
+        else if ((input & World.RIGHT) != 0) dx = 1;
+        if (dx == 0 && dy == 0) return false;
+        int x = world.x(i);
+        int y = world.y(i);
+        int nx = x + dx;
+        int ny = y + dy;
+        if (!canStep(nx, ny)) return false;
+        occupancy.movePlayer(occupancy.cell(x, y), occupancy.cell(nx, ny));
+        world.move(i, nx, ny, tick);
+        return true;
+    }
+
+    private boolean canStep(int x, int y) {
+        if (!occupancy.inside(x, y)) return false;
+        char cell = grid[y][x];
+        if (cell == '#' || cell == '*') return false;
+        return !occupancy.hasBomb(occupancy.cell(x, y));
+    }
+
+    private void placeBomb(int i) {
+        int cell = occupancy.cell(world.x(i), world.y(i));
+        if (occupancy.hasBomb(cell)) return;
+        if (world.bombsAvailable(i) <= 0) return;
+        occupancy.setBomb(cell, true);
+        world.addBomb(world.playerId(i), cell, BOMB_TIMER);
+        world.addBombsAvailable(i, -1);
+    }
+
+    private void updateBombs() {
+        chainLength = 0;
+        for (int i = 0; i < world.bombCount(); i++) {
+            if (world.tickBomb(i) <= 0) queueDetonation(world.bombCell(i));
+        }
+        if (chainLength == 0) return;
+        occupancy.clearBlast();
+        boolean hit = false;
+        for (int i = 0; i < chainLength; i++) {
+            hit |= explode(chain[i]);
+        }
+        if (hit) killPlayersInBlast();
+    }
+
+    private void queueDetonation(int cell) {
+        occupancy.setBomb(cell, false);
+        chain[chainLength++] = cell;
+    }
+
+    private void killPlayersInBlast() {
+        for (int i = 0; i < world.playerCount(); i++) {
+            if (world.alive(i) && occupancy.inBlast(occupancy.cell(world.x(i), world.y(i)))) world.kill(i);
+        }
+    }
+
+    private boolean explode(int origin) {
+        int bx = origin % width;
+        int by = origin / width;
+        int count = 0;
+        blastCells[count++] = origin;
+        for (int d = 0; d < DX.length; d++) {
+            for (int i = 1; i <= BLAST_POWER; i++) {
+                int nx = bx + DX[d] * i;
+                int ny = by + DY[d] * i;
+                if (!occupancy.inside(nx, ny)) break;
+                char cell = grid[ny][nx];
+                blastCells[count++] = occupancy.cell(nx, ny);
+                if (cell == '#') break;
+                if (cell == '*') {
+                    clearCell(nx, ny);
+                    break;
+                }
+            }
+        }
+        boolean hit = false;
+        for (int i = 0; i < count; i++) {
+            int cell = blastCells[i];
+            fire.ignite(cell, FIRE_TTL);
+            occupancy.markBlast(cell);
+            if (occupancy.hasBomb(cell)) queueDetonation(cell);
+            if (occupancy.playersAt(cell) > 0) hit = true;
+        }
+        int owner = world.indexOf(world.removeBomb(origin));
+        if (owner >= 0) world.addBombsAvailable(owner, 1);
+        return hit;
+    }
+
+    public void clearCell(int x, int y) {
+        grid[y][x] = '.';
+        logCleared(occupancy.cell(x, y));
+    }
+
+    private void logCleared(int cell) {
+        if (clearedCount == clearedLog.length) clearedLog = Arrays.copyOf(clearedLog, clearedCount * 2);
+        clearedLog[clearedCount++] = cell;
+        clearedMask[cell >>> 6] |= 1L << cell;
+    }
+
+    private void updateExplosions() {
+        fire.tick();
+    }
+
+    private void checkGameOver() {
+        if (gameOver) return;
+        if (world.playerCount() < 2) return;
+        int survivor = -1;
+        int alive = 0;
+        for (int i = 0; i < world.playerCount(); i++) {
+            if (!world.alive(i)) continue;
+            survivor = i;
+            alive++;
+        }
+        if (alive == 1) {
+            gameOver = true;
+            winnerId = world.playerId(survivor);
+            winnerName = world.name(survivor);
+        } else if (alive == 0) {
+            gameOver = true;
+            winnerId = 0;
+            winnerName = "DRAW";
+        }
+    }
+
+    private char[][] generateMap(Random random) {
+        char[][] m = new char[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (y == 0 || x == 0 || y == height - 1 || x == width - 1) m[y][x] = '#';
+                else if (x % 2 == 0 && y % 2 == 0) m[y][x] = '#';
+                else {
+                    if (random.nextDouble() < 0.35) m[y][x] = '*';
+                    else m[y][x] = '.';
+                }
+            }
+        }
+        for (int i = 0; i < spawns.count(); i++) {
+            clearSpawn(m, spawns.x(i), spawns.y(i));
+        }
+        return m;
+    }
+
+    private void clearSpawn(char[][] m, int sx, int sy) {
+        m[sy][sx] = '.';
+        for (int d = 0; d < DX.length; d++) {
+            int x = sx + DX[d];
+            int y = sy + DY[d];
+            if (x > 0 && y > 0 && x < width - 1 && y < height - 1) m[y][x] = '.';
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.kpfu.itis.model;
+
+import java.util.Arrays;
+
+public class SpatialGrid {
+    private final int shift;
+    private final int cols;
+    private final int[] head;
+    private int[] next = new int[16];
+
+    public SpatialGrid(int width, int height, int shift) {
+        this.shift = shift;
+        this.cols = ((width - 1) >> shift) + 1;
+        int rows = ((height - 1) >> shift) + 1;
+        this.head = new int[cols * rows];
+        Arrays.fill(head, -1);
+    }
+
+    public void clear(int capacity) {
+        Arrays.fill(head, -1);
+        if (next.length < capacity) next = new int[Math.max(capacity, next.length * 2)];
+    }
+
+    public void add(int index, int x, int y) {
+        int bucket = (y >> shift) * cols + (x >> shift);
+        next[index] = head[bucket];
+        head[bucket] = index;
+    }
+
+    public int query(int left, int top, int right, int bottom, int[] out) {
+        int count = 0;
+        for (int by = top >> shift; by <= bottom >> shift; by++) {
+            for (int bx = left >> shift; bx <= right >> shift; bx++) {
+                for (int i = head[by * cols + bx]; i >= 0; i = next[i]) {
+                    out[count++] = i;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,78 @@
+package ru.kpfu.itis.model;
+
+public class SpawnAllocator {
+    private final int[] xs;
+    private final int[] ys;
+    private final boolean[] taken;
+
+    public SpawnAllocator(int width, int height, int count) {
+        int maxCols = (width - 1) / 2;
+        int maxRows = (height - 1) / 2;
+        int cols = (int) Math.round(Math.sqrt(count * (double) width / height));
+        cols = Math.max(1, Math.min(maxCols, cols));
+        int rows = (count + cols - 1) / cols;
+        if (rows > maxRows) {
+            rows = maxRows;
+            cols = Math.min(maxCols, (count + rows - 1) / rows);
+        }
+        int total = cols * rows;
+        int stride = Math.max(1, (int) Math.round(total * 0.618));
+        while (gcd(stride, total) != 1) stride++;
+        this.xs = new int[total];
+        this.ys = new int[total];
+        this.taken = new boolean[total];
+        for (int i = 0; i < total; i++) {
+            int lattice = (int) ((long) i * stride % total);
+            xs[i] = 1 + 2 * spread(lattice % cols, cols, maxCols);
+            ys[i] = 1 + 2 * spread(lattice / cols, rows, maxRows);
+        }
+    }
+
+    public static int capacity(int width, int height) {
+        return ((width - 1) / 2) * ((height - 1) / 2);
+    }
+
+    public int count() {
+        return xs.length;
+    }
+
+    public int x(int slot) {
+        return xs[slot];
+    }
+
+    public int y(int slot) {
+        return ys[slot];
+    }
+
+    public int acquire() {
+        for (int i = 0; i < taken.length; i++) {
+            if (!taken[i]) {
+                taken[i] = true;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void take(int slot) {
+        taken[slot] = true;
+    }
+
+    public void release(int slot) {
+        if (slot >= 0 && slot < taken.length) taken[slot] = false;
+    }
+
+    private static int spread(int index, int count, int max) {
+        if (count == 1) return (max - 1) / 2;
+        return (int) Math.round(index * (max - 1) / (double) (count - 1));
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,292 @@
+package ru.kpfu.itis.model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class World {
+    public static final int UP = 1;
+    public static final int DOWN = 2;
+    public static final int LEFT = 4;
+    public static final int RIGHT = 8;
+    public static final int BOMB = 16;
+    public static final int FLAGS = 31;
+    private static final int INPUT_RING = 16;
+
+    private final int width;
+    private final int capacity;
+
+    private int playerCount;
+    private final int[] playerIds;
+    private final String[] names;
+    private final int[] xs;
+    private final int[] ys;
+    private final boolean[] alive;
+    private final int[] bombsAvailable;
+    private final long[] lastMoveTicks;
+    private final int[] heldInputs;
+    private final int[] lastInputs;
+    private final int[] appliedStamps;
+    private final long[] appliedTicks;
+    private final int[] inputTicks;
+    private final int[] indexById;
+    private final int[] postedSeqs;
+    private final int[] queuedFlags;
+    private final int[] queuedStamps;
+    private final AtomicIntegerArray queued;
+    private final AtomicIntegerArray drained;
+
+    private int bombCount;
+    private int[] bombCells;
+    private int[] bombOwners;
+    private int[] bombTimers;
+    private final int[] bombIndex;
+
+    public World(int width, int height, int playerCapacity) {
+        this.width = width;
+        this.capacity = playerCapacity;
+        this.playerIds = new int[playerCapacity];
+        this.names = new String[playerCapacity];
+        this.xs = new int[playerCapacity];
+        this.ys = new int[playerCapacity];
+        this.alive = new boolean[playerCapacity];
+        this.bombsAvailable = new int[playerCapacity];
+        this.lastMoveTicks = new long[playerCapacity];
+        this.heldInputs = new int[playerCapacity];
+        this.lastInputs = new int[playerCapacity];
+        this.appliedStamps = new int[playerCapacity];
+        this.appliedTicks = new long[playerCapacity];
+        this.inputTicks = new int[playerCapacity];
+        this.indexById = new int[playerCapacity + 1];
+        this.postedSeqs = new int[playerCapacity + 1];
+        this.queuedFlags = new int[(playerCapacity + 1) * INPUT_RING];
+        this.queuedStamps = new int[queuedFlags.length];
+        this.queued = new AtomicIntegerArray(playerCapacity + 1);
+        this.drained = new AtomicIntegerArray(playerCapacity + 1);
+        int bombCapacity = Math.max(16, playerCapacity * 2);
+        this.bombCells = new int[bombCapacity];
+        this.bombOwners = new int[bombCapacity];
+        this.bombTimers = new int[bombCapacity];
+        this.bombIndex = new int[width * height];
+        Arrays.fill(indexById, -1);
+        Arrays.fill(bombIndex, -1);
+    }
+
+    public int playerCount() {
+        return playerCount;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int freeId() {
+        for (int id = 1; id <= capacity; id++) {
+            if (indexById[id] < 0) return id;
+        }
+        return -1;
+    }
+
+    public int addPlayer(int id, String name, int x, int y, int bombs) {
+        if (id < 1 || id > capacity || indexById[id] >= 0) {
+            throw new IllegalArgumentException("Недопустимый id игрока: " + id);
+        }
+        int i = playerCount++;
+        playerIds[i] = id;
+        names[i] = name;
+        xs[i] = x;
+        ys[i] = y;
+        alive[i] = true;
+        bombsAvailable[i] = bombs;
+        lastMoveTicks[i] = 0;
+        heldInputs[i] = 0;
+        lastInputs[i] = 0;
+        appliedStamps[i] = 0;
+        appliedTicks[i] = 0;
+        inputTicks[i] = 0;
+        indexById[id] = i;
+        postedSeqs[id] = 0;
+        drained.set(id, queued.get(id));
+        return i;
+    }
+
+    public boolean removePlayer(int id) {
+        int i = indexOf(id);
+        if (i < 0) return false;
+        int last = --playerCount;
+        playerIds[i] = playerIds[last];
+        names[i] = names[last];
+        xs[i] = xs[last];
+        ys[i] = ys[last];
+        alive[i] = alive[last];
+        bombsAvailable[i] = bombsAvailable[last];
+        lastMoveTicks[i] = lastMoveTicks[last];
+        heldInputs[i] = heldInputs[last];
+        lastInputs[i] = lastInputs[last];
+        appliedStamps[i] = appliedStamps[last];
+        appliedTicks[i] = appliedTicks[last];
+        inputTicks[i] = inputTicks[last];
+        indexById[playerIds[i]] = i;
+        names[last] = null;
+        indexById[id] = -1;
+        return true;
+    }
+
+    public int indexOf(int id) {
+        return id >= 0 && id < indexById.length ? indexById[id] : -1;
+    }
+
+    public int playerId(int i) {
+        return playerIds[i];
+    }
+
+    public String name(int i) {
+        return names[i];
+    }
+
+    public int x(int i) {
+        return xs[i];
+    }
+
+    public int y(int i) {
+        return ys[i];
+    }
+
+    public boolean alive(int i) {
+        return alive[i];
+    }
+
+    public int bombsAvailable(int i) {
+        return bombsAvailable[i];
+    }
+
+    public long lastMoveTick(int i) {
+        return lastMoveTicks[i];
+    }
+
+    public void move(int i, int x, int y, long tick) {
+        xs[i] = x;
+        ys[i] = y;
+        lastMoveTicks[i] = tick;
+    }
+
+    public void kill(int i) {
+        alive[i] = false;
+    }
+
+    public void addBombsAvailable(int i, int delta) {
+        bombsAvailable[i] += delta;
+    }
+
+    public boolean postInput(int id, int flags, int seq, int stamp) {
+        if (id < 1 || id > capacity) return false;
+        if (seq != 0) {
+            if (seq <= postedSeqs[id]) return false;
+            postedSeqs[id] = seq;
+        }
+        int tail = queued.get(id);
+        if (tail - drained.get(id) == INPUT_RING) return false;
+        int slot = id * INPUT_RING + (tail & (INPUT_RING - 1));
+        queuedFlags[slot] = flags & FLAGS;
+        queuedStamps[slot] = stamp;
+        queued.set(id, tail + 1);
+        return true;
+    }
+
+    public boolean nextInput(int i, long tick) {
+        int id = playerIds[i];
+        int head = drained.get(id);
+        if (head == queued.get(id)) return false;
+        int slot = id * INPUT_RING + (head & (INPUT_RING - 1));
+        lastInputs[i] = queuedFlags[slot];
+        heldInputs[i] = queuedFlags[slot] & ~BOMB;
+        appliedStamps[i] = queuedStamps[slot];
+        appliedTicks[i] = tick;
+        drained.set(id, head + 1);
+        return true;
+    }
+
+    public int lastInput(int i) {
+        return lastInputs[i];
+    }
+
+    public int heldInput(int i) {
+        return heldInputs[i];
+    }
+
+    public void restoreInput(int i, int flags) {
+        heldInputs[i] = flags & FLAGS & ~BOMB;
+    }
+
+    public int inputTick(int i) {
+        return inputTicks[i];
+    }
+
+    public void acknowledgeInput(int i, long tick) {
+        boolean moving = (heldInputs[i] & (UP | DOWN | LEFT | RIGHT)) != 0;
+        inputTicks[i] = moving ? appliedStamps[i] + (int) (tick - appliedTicks[i]) : appliedStamps[i];
+    }
+
+    public Player player(int i) {
+        return new Player(playerIds[i], names[i], xs[i], ys[i], alive[i], bombsAvailable[i], inputTicks[i]);
+    }
+
+    public int bombCount() {
+        return bombCount;
+    }
+
+    public boolean hasBomb(int cell) {
+        return bombIndex[cell] >= 0;
+    }
+
+    public int bombAt(int cell) {
+        return bombIndex[cell];
+    }
+
+    public void addBomb(int ownerId, int cell, int timer) {
+        if (bombCount == bombCells.length) growBombs(bombCount * 2);
+        int i = bombCount++;
+        bombCells[i] = cell;
+        bombOwners[i] = ownerId;
+        bombTimers[i] = timer;
+        bombIndex[cell] = i;
+    }
+
+    public int removeBomb(int cell) {
+        int i = bombIndex[cell];
+        int owner = bombOwners[i];
+        int last = --bombCount;
+        bombCells[i] = bombCells[last];
+        bombOwners[i] = bombOwners[last];
+        bombTimers[i] = bombTimers[last];
+        bombIndex[bombCells[i]] = i;
+        bombIndex[cell] = -1;
+        return owner;
+    }
+
+    public int bombCell(int i) {
+        return bombCells[i];
+    }
+
+    public int bombOwner(int i) {
+        return bombOwners[i];
+    }
+
+    public int bombTimer(int i) {
+        return bombTimers[i];
+    }
+
+    public int tickBomb(int i) {
+        return --bombTimers[i];
+    }
+
+    public Bomb bomb(int i) {
+        int cell = bombCells[i];
+        return new Bomb(bombOwners[i], cell % width, cell / width, bombTimers[i]);
+    }
+
+    private void growBombs(int capacity) {
+        bombCells = Arrays.copyOf(bombCells, capacity);
+        bombOwners = Arrays.copyOf(bombOwners, capacity);
+        bombTimers = Arrays.copyOf(bombTimers, capacity);
+    }
+}
@@ -0,0 +1,441 @@
+package ru.kpfu.itis.net;
+
+import ru.kpfu.itis.model.Bomb;
+import ru.kpfu.itis.model.Explosion;
+import ru.kpfu.itis.model.Player;
+import ru.kpfu.itis.net.message.*;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BinaryProtocol {
+    private static final MessageType[] TYPES = MessageType.values();
+    private static final WireFormat[] FORMATS = WireFormat.values();
+
+    private static final int FLAG_UP = 1;
+    private static final int FLAG_DOWN = 1 << 1;
+    private static final int FLAG_LEFT = 1 << 2;
+    private static final int FLAG_RIGHT = 1 << 3;
+    private static final int FLAG_BOMB = 1 << 4;
+    static final int FLAG_ALIVE = 1;
+    static final int FLAG_NAMED = 1 << 1;
+    private static final int FLAG_SERVER_TIME = 1;
+
+    private static final Comparator<Explosion> FIRE_ORDER =
+            Comparator.comparingInt(Explosion::y).thenComparingInt(Explosion::x);
+
+    static final char[] CELLS = {'.', '#', '*', '.'};
+
+    private static final ThreadLocal<ByteBuffer> SCRATCH = ThreadLocal.withInitial(() -> ByteBuffer.allocate(4096));
+
+    public static ByteBuffer encode(Message message) {
+        ByteBuffer body = SCRATCH.get();
+        while (true) {
+            try {
+                body.clear();
+                body.put((byte) message.getType().ordinal());
+                writeBody(body, message);
+                break;
+            } catch (BufferOverflowException e) {
+                body = ByteBuffer.allocate(body.capacity() * 2);
+                SCRATCH.set(body);
+            }
+        }
+        body.flip();
+        ByteBuffer packet = ByteBuffer.allocate(varIntSize(body.remaining()) + body.remaining());
+        writeVarInt(packet, body.remaining());
+        packet.put(body).flip();
+        return packet.asReadOnlyBuffer();
+    }
+
+    public static Message decode(ByteBuffer frame) {
+        try {
+            if (!frame.hasRemaining()) return null;
+            int type = frame.get() & 0xFF;
+            if (type >= TYPES.length) return null;
+            return switch (TYPES[type]) {
+                case HELLO -> new HelloMessage(readString(frame), readFormat(frame),
+                        frame.hasRemaining() && (frame.get() & FLAG_SERVER_TIME) != 0);
+                case WELCOME -> decodeWelcome(frame);
+                case START -> new StartMessage();
+                case INPUT -> decodeInput(frame);
+                case STATE -> decodeState(frame);
+                case GAME_OVER -> new GameOverMessage(readVarInt(frame), readString(frame));
+                case DELTA -> decodeDelta(frame);
+                case ACK -> new AckMessage(readVarLong(frame));
+            };
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void writeBody(ByteBuffer out, Message message) {
+        switch (message) {
+            case HelloMessage hello -> {
+                writeString(out, hello.name());
+                out.put((byte) hello.format().ordinal());
+                if (hello.serverTime()) out.put((byte) FLAG_SERVER_TIME);
+            }
+            case WelcomeMessage welcome -> {
+                writeVarInt(out, welcome.playerId());
+                writeVarInt(out, welcome.width());
+                writeVarInt(out, welcome.height());
+                writeGrid(out, welcome.map(), Protocol.getMapRowDelimiter().charAt(0));
+                out.put((byte) welcome.format().ordinal());
+            }
+            case InputMessage input -> {
+                writeVarInt(out, input.playerId());
+                int flags = 0;
+                if (input.up()) flags |= FLAG_UP;
+                if (input.down()) flags |= FLAG_DOWN;
+                if (input.left()) flags |= FLAG_LEFT;
+                if (input.right()) flags |= FLAG_RIGHT;
+                if (input.bomb()) flags |= FLAG_BOMB;
+                out.put((byte) flags);
+                writeVarInt(out, input.seq());
+                writeVarInt(out, input.tick());
+            }
+            case StateMessage state -> writeState(out, state);
+            case GameOverMessage gameOver -> {
+                writeVarInt(out, gameOver.winnerId());
+                writeString(out, gameOver.winnerName());
+            }
+            case DeltaStateMessage delta -> writeDelta(out, delta);
+            case AckMessage ack -> writeVarLong(out, ack.tick());
+            default -> {
+            }
+        }
+    }
+
+    private static void writeState(ByteBuffer out, StateMessage state) {
+        writeVarLong(out, state.tick());
+        Map<Integer, Player> players = state.players();
+        writeVarInt(out, players.size());
+        for (Player p : players.values()) {
+            writeVarInt(out, p.id());
+            writeVarInt(out, p.x());
+            writeVarInt(out, p.y());
+            writeVarInt(out, p.bombsAvailable());
+            writeVarInt(out, p.inputTick());
+            out.put((byte) (p.alive() ? FLAG_ALIVE : 0));
+            writeString(out, p.name());
+        }
+        List<Bomb> bombs = state.bombs();
+        writeVarInt(out, bombs.size());
+        for (Bomb b : bombs) {
+            writeVarInt(out, b.ownerId());
+            writeVarInt(out, b.x());
+            writeVarInt(out, b.y());
+            writeVarInt(out, b.timer());
+        }
+        writeFire(out, state.explosions());
+        writeGrid(out, state.grid(), Protocol.getGridRowDelimiter().charAt(0));
+        if (state.gridTop() > 0 || state.serverTime() > 0) writeVarInt(out, state.gridTop());
+        if (state.serverTime() > 0) writeVarLong(out, state.serverTime());
+    }
+
+    private static void writeDelta(ByteBuffer out, DeltaStateMessage delta) {
+        writeVarLong(out, delta.tick());
+        writeVarLong(out, delta.tick() - delta.baseTick());
+        writeVarInt(out, delta.players().size());
+        for (Player p : delta.players()) {
+            writeVarInt(out, p.id());
+            writeVarInt(out, p.x());
+            writeVarInt(out, p.y());
+            writeVarInt(out, p.bombsAvailable());
+            writeVarInt(out, p.inputTick());
+            out.put((byte) ((p.alive() ? FLAG_ALIVE : 0) | (p.name() != null ? FLAG_NAMED : 0)));
+            if (p.name() != null) writeString(out, p.name());
+        }
+        writeCells(out, delta.removedPlayers());
+        writeVarInt(out, delta.bombs().size());
+        for (Bomb b : delta.bombs()) {
+            writeVarInt(out, b.ownerId());
+            writeVarInt(out, b.x());
+            writeVarInt(out, b.y());
+            writeVarInt(out, b.timer());
+        }
+        writeCells(out, delta.removedBombs());
+        writeFire(out, delta.explosions());
+        writeCells(out, delta.removedExplosions());
+        writeCells(out, delta.clearedCells());
+        if (delta.serverTime() > 0) writeVarLong(out, delta.serverTime());
+    }
+
+    private static DeltaStateMessage decodeDelta(ByteBuffer in) {
+        long tick = readVarLong(in);
+        long baseTick = tick - readVarLong(in);
+        int playerCount = readCount(in);
+        List<Player> players = new ArrayList<>(playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            int id = readVarInt(in);
+            int x = readVarInt(in);
+            int y = readVarInt(in);
+            int bombsAvailable = readVarInt(in);
+            int inputTick = readVarInt(in);
+            int flags = in.get();
+            String name = (flags & FLAG_NAMED) != 0 ? readString(in) : null;
+            players.add(new Player(id, name, x, y, (flags & FLAG_ALIVE) != 0, bombsAvailable, inputTick));
+        }
+        List<Integer> removedPlayers = readCells(in);
+        int bombCount = readCount(in);
+        List<Bomb> bombs = new ArrayList<>(bombCount);
+        for (int i = 0; i < bombCount; i++) {
+            bombs.add(new Bomb(readVarInt(in), readVarInt(in), readVarInt(in), readVarInt(in)));
+        }
+        List<Integer> removedBombs = readCells(in);
+        List<Explosion> explosions = readFire(in);
+        List<Integer> removedExplosions = readCells(in);
+        List<Integer> clearedCells = readCells(in);
+        long serverTime = in.hasRemaining() ? readVarLong(in) : 0;
+        return new DeltaStateMessage(tick, baseTick, players, removedPlayers, bombs, removedBombs,
+                explosions, removedExplosions, clearedCells, serverTime);
+    }
+
+    private static void writeFire(ByteBuffer out, List<Explosion> explosions) {
+        writeVarInt(out, explosions.size());
+        if (explosions.isEmpty()) return;
+        List<Explosion> sorted = new ArrayList<>(explosions);
+        sorted.sort(FIRE_ORDER);
+        int prevX = 0;
+        int prevY = 0;
+        for (Explosion e : sorted) {
+            int dy = e.y() - prevY;
+            writeVarInt(out, dy);
+            writeVarInt(out, dy == 0 ? e.x() - prevX : e.x());
+            out.put((byte) Math.min(e.ttl(), 0xFF));
+            prevX = e.x();
+            prevY = e.y();
+        }
+    }
+
+    private static List<Explosion> readFire(ByteBuffer in) {
+        int count = readCount(in);
+        List<Explosion> explosions = new ArrayList<>(count);
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < count; i++) {
+            int dy = readVarInt(in);
+            y += dy;
+            x = dy == 0 ? x + readVarInt(in) : readVarInt(in);
+            explosions.add(new Explosion(x, y, in.get() & 0xFF));
+        }
+        return explosions;
+    }
+
+    private static void writeCells(ByteBuffer out, List<Integer> cells) {
+        writeVarInt(out, cells.size());
+        for (Integer cell : cells) {
+            writeVarInt(out, cell);
+        }
+    }
+
+    private static List<Integer> readCells(ByteBuffer in) {
+        int count = readCount(in);
+        List<Integer> cells = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            cells.add(readVarInt(in));
+        }
+        return cells;
+    }
+
+    private static WelcomeMessage decodeWelcome(ByteBuffer in) {
+        int playerId = readVarInt(in);
+        int width = readSide(in);
+        int height = readSide(in);
+        String map = readGrid(in, Protocol.getMapRowDelimiter().charAt(0), MatchConfig.MIN_SIDE);
+        return new WelcomeMessage(playerId, width, height, map, readFormat(in));
+    }
+
+    private static InputMessage decodeInput(ByteBuffer in) {
+        int playerId = readVarInt(in);
+        int flags = in.get();
+        return new InputMessage(playerId,
+                (flags & FLAG_UP) != 0,
+                (flags & FLAG_DOWN) != 0,
+                (flags & FLAG_LEFT) != 0,
+                (flags & FLAG_RIGHT) != 0,
+                (flags & FLAG_BOMB) != 0,
+                readVarInt(in),
+                readVarInt(in));
+    }
+
+    private static StateMessage decodeState(ByteBuffer in) {
+        long tick = readVarLong(in);
+        int playerCount = readCount(in);
+        Map<Integer, Player> players = new HashMap<>();
+        for (int i = 0; i < playerCount; i++) {
+            int id = readVarInt(in);
+            int x = readVarInt(in);
+            int y = readVarInt(in);
+            int bombsAvailable = readVarInt(in);
+            int inputTick = readVarInt(in);
+            boolean alive = (in.get() & FLAG_ALIVE) != 0;
+            players.put(id, new Player(id, readString(in), x, y, alive, bombsAvailable, inputTick));
+        }
+        int bombCount = readCount(in);
+        List<Bomb> bombs = new ArrayList<>(bombCount);
+        for (int i = 0; i < bombCount; i++) {
+            bombs.add(new Bomb(readVarInt(in), readVarInt(in), readVarInt(in), readVarInt(in)));
+        }
+        List<Explosion> explosions = readFire(in);
+        String grid = readGrid(in, Protocol.getGridRowDelimiter().charAt(0), 1);
+        int gridTop = in.hasRemaining() ? readVarInt(in) : 0;
+        if (gridTop < 0 || gridTop > MatchConfig.MAX_SIDE) throw new IllegalArgumentException("Неверный размер карты");
+        long serverTime = in.hasRemaining() ? readVarLong(in) : 0;
+        return new StateMessage(tick, players, bombs, explosions, grid, gridTop, serverTime);
+    }
+
+    private static void writeGrid(ByteBuffer out, String grid, char rowDelimiter) {
+        if (grid == null || grid.isEmpty()) {
+            writeVarInt(out, 0);
+            return;
+        }
+        int width = grid.indexOf(rowDelimiter);
+        if (width < 0) width = grid.length();
+        int height = (grid.length() + 1) / (width + 1);
+        writeVarInt(out, width);
+        writeVarInt(out, height);
+        int packed = 0;
+        int shift = 0;
+        for (int y = 0; y < height; y++) {
+            int row = y * (width + 1);
+            for (int x = 0; x < width; x++) {
+                packed |= cellCode(grid.charAt(row + x)) << shift;
+                shift += 2;
+                if (shift == 8) {
+                    out.put((byte) packed);
+                    packed = 0;
+                    shift = 0;
+                }
+            }
+        }
+        if (shift > 0) out.put((byte) packed);
+    }
+
+    private static String readGrid(ByteBuffer in, char rowDelimiter, int minHeight) {
+        int width = readVarInt(in);
+        if (width == 0) return "";
+        checkSide(width);
+        int height = readVarInt(in);
+        if (height < minHeight || height > MatchConfig.MAX_SIDE) throw new IllegalArgumentException("Неверный размер карты: " + height);
+        if ((long) width * height > in.remaining() * 4L) throw new IllegalArgumentException("Неверный размер карты");
+        char[] chars = new char[height * (width + 1) - 1];
+        int packed = 0;
+        int shift = 8;
+        int pos = 0;
+        for (int y = 0; y < height; y++) {
+            if (y > 0) chars[pos++] = rowDelimiter;
+            for (int x = 0; x < width; x++) {
+                if (shift == 8) {
+                    packed = in.get() & 0xFF;
+                    shift = 0;
+                }
+                chars[pos++] = CELLS[(packed >> shift) & 3];
+                shift += 2;
+            }
+        }
+        return new String(chars);
+    }
+
+    private static int cellCode(char cell) {
+        return switch (cell) {
+            case '#' -> 1;
+            case '*' -> 2;
+            default -> 0;
+        };
+    }
+
+    private static int readCount(ByteBuffer in) {
+        int count = readVarInt(in);
+        if (count < 0 || count > in.remaining()) throw new BufferUnderflowException();
+        return count;
+    }
+
+    private static int readSide(ByteBuffer in) {
+        return checkSide(readVarInt(in));
+    }
+
+    private static int checkSide(int side) {
+        if (side < MatchConfig.MIN_SIDE || side > MatchConfig.MAX_SIDE) {
+            throw new IllegalArgumentException("Неверный размер карты: " + side);
+        }
+        return side;
+    }
+
+    private static WireFormat readFormat(ByteBuffer in) {
+        if (!in.hasRemaining()) return WireFormat.TEXT;
+        int ordinal = in.get() & 0xFF;
+        return ordinal < FORMATS.length ? FORMATS[ordinal] : WireFormat.TEXT;
+    }
+
+    private static void writeString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.put(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readCount(in);
+        if (!in.hasArray()) {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    public static void writeVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    public static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Слишком длинный varint");
+    }
+
+    public static void writeVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    public static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Слишком длинный varint");
+    }
+
+    public static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,120 @@
+package ru.kpfu.itis.net;
+
+import ru.kpfu.itis.net.message.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class ClientHandler implements Connection.Listener {
+    private final GameServer server;
+    private final Connection connection;
+    private volatile GameRoom room;
+    private volatile WireFormat format = WireFormat.TEXT;
+    private volatile boolean ready;
+    private volatile boolean serverTime;
+    private volatile long lastAckedTick;
+    private final AtomicBoolean left = new AtomicBoolean();
+    private final SnapshotHistory views = new SnapshotHistory(32);
+    private int playerId;
+
+    ClientHandler(GameServer server, Connection connection) {
+        this.server = server;
+        this.connection = connection;
+    }
+
+    void attach(GameRoom room, int playerId) {
+        this.room = room;
+        this.playerId = playerId;
+    }
+
+    int playerId() {
+        return playerId;
+    }
+
+    SnapshotHistory views() {
+        return views;
+    }
+
+    WireFormat format() {
+        return format;
+    }
+
+    boolean wantsServerTime() {
+        return serverTime;
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    long lastAckedTick() {
+        return lastAckedTick;
+    }
+
+    @Override
+    public void onFrame(ByteBuffer frame) {
+        Message message;
+        try {
+            message = format.decode(frame);
+        } catch (RuntimeException e) {
+            message = null;
+        }
+        server.metrics().messageParsed(message != null);
+        if (room == null) {
+            if (message instanceof HelloMessage hello) {
+                serverTime = hello.serverTime();
+                server.join(this, hello.name());
+                sendWelcome(hello.format());
+                sendInitialState();
+            }
+            return;
+        }
+        handle(message);
+    }
+
+    @Override
+    public void onClose() {
+        disconnect();
+    }
+
+    void handle(Message message) {
+        if (message instanceof InputMessage input) {
+            if (input.playerId() != playerId) return;
+            room.applyInput(playerId, input);
+        } else if (message instanceof AckMessage ack) {
+            lastAckedTick = ack.tick();
+            long started = room.tickStartedNanos(ack.tick());
+            if (started != 0) server.metrics().ackLatency().record(System.nanoTime() - started);
+        }
+    }
+
+    void sendWelcome(WireFormat requested) {
+        WelcomeMessage welcome = room.createWelcomeMessage(playerId, requested);
+        send(welcome);
+        format = requested;
+        connection.setLengthPrefixed(requested == WireFormat.BINARY);
+        send(new StartMessage());
+        ready = true;
+    }
+
+    void sendInitialState() {
+        room.sendInitialState(this);
+    }
+
+    void send(Message message) {
+        send(format.encode(message));
+    }
+
+    void send(ByteBuffer packet) {
+        connection.send(packet.duplicate());
+    }
+
+    void sendLatest(ByteBuffer packet) {
+        connection.sendLatest(packet.duplicate());
+    }
+
+    void disconnect() {
+        if (room != null && left.compareAndSet(false, true)) server.leave(room, playerId);
+        connection.close();
+    }
+}
@@ -0,0 +1,221 @@
+package ru.kpfu.itis.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class Connection {
+    public interface Listener {
+        void onFrame(ByteBuffer frame);
+
+        void onClose();
+    }
+
+    private static final int INITIAL_BUFFER = 4096;
+    private static final int MAX_FRAME = 1 << 20;
+
+    private final NioTransport.IoLoop loop;
+    private final SocketChannel channel;
+    private final OutboundQueue outbound;
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final String peer;
+    private volatile long bytesIn;
+    private volatile long bytesOut;
+    private ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER);
+    private ByteBuffer frame = in.duplicate();
+    private volatile boolean lengthPrefixed;
+    private int needed;
+    private SelectionKey key;
+    private Listener listener;
+
+    Connection(NioTransport.IoLoop loop, SocketChannel channel) {
+        this.loop = loop;
+        this.channel = channel;
+        String address;
+        try {
+            address = String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            loop.ioError(e);
+            address = "?";
+        }
+        this.peer = address;
+        this.outbound = new OutboundQueue(address);
+    }
+
+    void register(SelectionKey key, Listener listener) {
+        this.key = key;
+        this.listener = listener;
+    }
+
+    public void send(ByteBuffer packet) {
+        send(packet, false);
+    }
+
+    public void sendLatest(ByteBuffer packet) {
+        send(packet, true);
+    }
+
+    private void send(ByteBuffer packet, boolean latest) {
+        if (closed.get()) return;
+        if (!outbound.offer(packet, latest) || outbound.isOverBudget()) {
+            loop.requestClose(this);
+            return;
+        }
+        if (writeScheduled.compareAndSet(false, true)) {
+            loop.requestFlush(this);
+        }
+    }
+
+    public int queueDepth() {
+        return outbound.depth();
+    }
+
+    public int queuedBytes() {
+        return outbound.queuedBytes();
+    }
+
+    public long droppedFrames() {
+        return outbound.dropped();
+    }
+
+    public String peer() {
+        return peer;
+    }
+
+    public long bytesIn() {
+        return bytesIn;
+    }
+
+    public long bytesOut() {
+        return bytesOut;
+    }
+
+    public void setLengthPrefixed(boolean lengthPrefixed) {
+        this.lengthPrefixed = lengthPrefixed;
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    public boolean isOpen() {
+        return !closed.get();
+    }
+
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        if (key != null) key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            loop.ioError(e);
+        }
+        loop.closed(this);
+        outbound.clear();
+        if (listener != null) listener.onClose();
+    }
+
+    void onReadable() {
+        try {
+            int read = channel.read(in);
+            if (read < 0) {
+                close();
+                return;
+            }
+            bytesIn += read;
+            loop.countIn(read);
+            in.flip();
+            int start = in.position();
+            needed = 0;
+            while (start < in.limit()) {
+                int next = lengthPrefixed ? nextPrefixedFrame(start) : nextLineFrame(start);
+                if (next < 0) break;
+                listener.onFrame(frame);
+                if (closed.get()) return;
+                start = next;
+            }
+            in.position(start);
+            in.compact();
+            if (!in.hasRemaining() || needed > in.capacity()) grow();
+        } catch (IOException e) {
+            loop.ioError(e);
+            close();
+        } catch (RuntimeException e) {
+            loop.peerError(this, e);
+        }
+    }
+
+    private int nextLineFrame(int start) {
+        for (int i = start; i < in.limit(); i++) {
+            if (in.get(i) != '\n') continue;
+            int end = i > start && in.get(i - 1) == '\r' ? i - 1 : i;
+            frame.clear().position(start).limit(end);
+            return i + 1;
+        }
+        return -1;
+    }
+
+    private int nextPrefixedFrame(int start) throws IOException {
+        int length = 0;
+        int pos = start;
+        for (int shift = 0; ; shift += 7) {
+            if (pos >= in.limit()) return -1;
+            if (shift > 21) throw new IOException("Неверная длина кадра");
+            byte b = in.get(pos++);
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) break;
+        }
+        if (length > MAX_FRAME) throw new IOException("Слишком длинный кадр");
+        if (pos + length > in.limit()) {
+            needed = pos + length - start;
+            return -1;
+        }
+        frame.clear().position(pos).limit(pos + length);
+        return pos + length;
+    }
+
+    boolean isStalled() {
+        return outbound.isOverBudget();
+    }
+
+    void flush() {
+        if (closed.get()) return;
+        if (outbound.isOverBudget()) {
+            loop.dropSlow(this);
+            return;
+        }
+        try {
+            ByteBuffer head;
+            while ((head = outbound.head()) != null) {
+                int written = channel.write(head);
+                bytesOut += written;
+                loop.countOut(written);
+                if (head.hasRemaining()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                outbound.completeHead();
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            writeScheduled.set(false);
+            if (!outbound.isEmpty() && writeScheduled.compareAndSet(false, true)) {
+                loop.requestFlush(this);
+            }
+        } catch (IOException e) {
+            loop.ioError(e);
+            close();
+        }
+    }
+
+    private void grow() throws IOException {
+        if (in.capacity() >= MAX_FRAME) throw new IOException("Слишком длинный кадр");
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(in.capacity() * 2, needed));
+        in.flip();
+        bigger.put(in);
+        in = bigger;
+        frame = in.duplicate();
+    }
+}
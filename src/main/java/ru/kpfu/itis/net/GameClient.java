@@ -1,96 +1,207 @@
 package ru.kpfu.itis.net;
 
+import ru.kpfu.itis.metrics.ClientStateEvent;
 import ru.kpfu.itis.model.GameState;
-import ru.kpfu.itis.net.Protocol;
+import ru.kpfu.itis.model.GameStateSource;
+import ru.kpfu.itis.model.World;
 import ru.kpfu.itis.net.message.*;
 
-import javax.swing.*;
-import java.io.BufferedReader;
+import jdk.jfr.EventType;
+
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
 
-public class GameClient {
+public class GameClient implements GameStateSource {
     public enum InputField {UP, DOWN, LEFT, RIGHT, BOMB}
 
+    public interface Listener {
+        default void onStateReceived(long tick, int frameBytes, long serverTime) {
+        }
+
+        default void onGameOver(Integer winnerId, String winnerName) {
+        }
+
+        default void onConnectionLost() {
+        }
+    }
+
+    private static final long KEEPALIVE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final EventType STATE_EVENTS = EventType.getEventType(ClientStateEvent.class);
+
+    private static final ScheduledExecutorService INPUT_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "client-input");
+        t.setDaemon(true);
+        return t;
+    });
+
     private final String host;
     private final int port;
     private final String name;
+    private final WireFormat requestedFormat;
+    private boolean serverTimeRequested;
 
     private volatile Socket socket;
-    private volatile PrintWriter writer;
-    private volatile BufferedReader reader;
+    private volatile WritableByteChannel writer;
+    private volatile InputStream reader;
+    private volatile WireFormat format = WireFormat.TEXT;
+    private byte[] input = new byte[8192];
+    private ByteBuffer inputView = ByteBuffer.wrap(input);
+    private int inputStart;
+    private int inputEnd;
+    private StateReader stateReader;
+    private final Prediction prediction = new Prediction();
+    private final Interpolation interpolation = new Interpolation();
     private volatile boolean running;
-    private GameState state;
-    private boolean up;
-    private boolean down;
-    private boolean left;
-    private boolean right;
-    private boolean bomb;
-    private final Timer inputTimer = new Timer(true);
-    private final List<Thread> threads = new ArrayList<>();
+    private final Object stateLock = new Object();
+    private volatile GameState state;
+    private final AtomicInteger keys = new AtomicInteger();
+    private int sentKeys;
+    private int inputSeq;
+    private volatile int clientTick;
+    private long lastSentNanos;
+    private volatile ScheduledFuture<?> inputTask;
+    private volatile Listener listener = new Listener() {
+    };
+    private volatile Runnable repaintListener = () -> {
+    };
+    private int frameBytes;
     private volatile boolean connected = false;
 
 
     public GameClient(String host, int port, String name) {
+        this(host, port, name, WireFormat.BINARY);
+    }
+
+    public GameClient(String host, int port, String name, WireFormat requestedFormat) {
         this.host = host;
         this.port = port;
         this.name = name;
+        this.requestedFormat = requestedFormat;
     }
 
     public void connect() throws Exception {
         socket = new Socket(host, port);
-        writer = new PrintWriter(socket.getOutputStream(), true);
-        reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        writer.println(new HelloMessage(name).serialize());
+        socket.setTcpNoDelay(true);
+        writer = Channels.newChannel(socket.getOutputStream());
+        reader = socket.getInputStream();
+        write(new HelloMessage(name, requestedFormat, serverTimeRequested));
         running = true;
         connected = true;
         startReader();
-        inputTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                sendInput();
-            }
-        }, 50, 70);
+        inputTask = INPUT_TIMER.scheduleAtFixedRate(this::localTick, RoomScheduler.PERIOD_NANOS,
+                RoomScheduler.PERIOD_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    public void requestServerTime() {
+        serverTimeRequested = true;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setRepaintListener(Runnable listener) {
+        this.repaintListener = listener;
     }
 
     private void startReader() {
-        Thread t = new Thread(() -> {
+        Thread.ofVirtual().name("client-reader-" + name).start(() -> {
             try {
-                String line;
-                while (running && (line = reader.readLine()) != null) {
-                    handleLine(line);
+                while (running) {
+                    ByteBuffer frame = readFrame();
+                    frameBytes = frame.remaining();
+                    if (stateReader != null && stateReader.read(frame, format)) handleState(stateReader);
+                    else handleMessage(format.decode(frame));
                 }
             } catch (IOException e) {
                 if (connected) {
-                    SwingUtilities.invokeLater(() -> {
-                        JOptionPane.showMessageDialog(null,
-                                "Соединение с сервером разорвано",
-                                "Ошибка соединения",
-                                JOptionPane.ERROR_MESSAGE);
-                    });
+                    listener.onConnectionLost();
+                    repaintListener.run();
                 }
             } finally {
                 close();
             }
         });
-        t.setDaemon(true);
-        t.start();
     }
 
-    private void handleLine(String line) {
-        Message message = Protocol.parse(line);
+    private ByteBuffer readFrame() throws IOException {
+        return format == WireFormat.BINARY ? readPrefixedFrame() : readLineFrame();
+    }
+
+    private ByteBuffer readLineFrame() throws IOException {
+        int length = 0;
+        while (true) {
+            while (inputStart + length < inputEnd) {
+                if (input[inputStart + length] == '\n') return takeFrame(0, length, 1);
+                length++;
+            }
+            fill(length + 1);
+        }
+    }
+
+    private ByteBuffer readPrefixedFrame() throws IOException {
+        int length = 0;
+        int header = 0;
+        for (int shift = 0; ; shift += 7) {
+            fill(header + 1);
+            int b = input[inputStart + header++];
+            if (shift > 21) throw new IOException("Неверная длина кадра");
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+        }
+        fill(header + length);
+        return takeFrame(header, length, 0);
+    }
+
+    private ByteBuffer takeFrame(int header, int length, int trailer) {
+        int from = inputStart + header;
+        inputStart = from + length + trailer;
+        if (trailer > 0 && length > 0 && input[from + length - 1] == '\r') length--;
+        return inputView.limit(from + length).position(from);
+    }
+
+    private void fill(int needed) throws IOException {
+        if (inputStart + needed > input.length) {
+            byte[] target = needed > input.length ? new byte[Math.max(needed, input.length * 2)] : input;
+            System.arraycopy(input, inputStart, target, 0, inputEnd - inputStart);
+            inputEnd -= inputStart;
+            inputStart = 0;
+            if (target != input) {
+                input = target;
+                inputView = ByteBuffer.wrap(input);
+            }
+        }
+        while (inputEnd - inputStart < needed) {
+            int n = reader.read(input, inputEnd, input.length - inputEnd);
+            if (n < 0) throw new EOFException();
+            inputEnd += n;
+        }
+    }
+
+    private synchronized void write(Message message) throws IOException {
+        ByteBuffer packet = format.encode(message);
+        while (packet.hasRemaining()) {
+            writer.write(packet);
+        }
+    }
+
+    private void handleMessage(Message message) {
         if (message == null) return;
 
         if (message instanceof WelcomeMessage welcome) {
             handleWelcome(welcome);
-        } else if (message instanceof StateMessage stateMsg) {
-            handleState(stateMsg);
         } else if (message instanceof StartMessage) {
         } else if (message instanceof GameOverMessage gameOver) {
             handleGameOver(gameOver);
@@ -98,74 +209,147 @@ public class GameClient {
     }
 
     private void handleWelcome(WelcomeMessage message) {
-        String[] rows = message.map().split(",");
-        char[][] grid = new char[message.height()][message.width()];
-        for (int y = 0; y < message.height(); y++) {
-            grid[y] = rows[y].toCharArray();
-        }
-        state = new GameState(message.width(), message.height(), grid, message.playerId(), name);
+        byte[] cells = cells(message.map(), ',', message.width(), message.height());
+        format = message.format();
+        update(current -> new GameState(message.width(), message.height(), cells, message.playerId(), name));
+        stateReader = new StateReader(message.width(), message.height(), cells);
+        repaintListener.run();
     }
 
-    private void handleState(StateMessage message) {
+    private void handleState(StateReader reader) {
         if (state == null) return;
-        if (message.grid() != null && !message.grid().isEmpty()) {
-            String[] rows = message.grid().split("/");
-            char[][] grid = new char[rows.length][];
-            for (int r = 0; r < rows.length; r++) {
-                grid[r] = rows[r].toCharArray();
-            }
-            state.updateGrid(grid);
+        if (reader.missingBase()) {
+            acknowledge(0);
+            return;
+        }
+        ClientStateEvent event = startState();
+        update(current -> {
+            GameState next = reader.gridChanged() ? current.withGrid(reader.cells()) : current;
+            if (reader.entitiesChanged()) next = next.withEntities(reader.players(), reader.bombs(), reader.explosions());
+            return prediction.reconcile(next, reader.players().get(next.ownPlayerId()), reader.tick());
+        });
+        interpolation.add(reader.tick(), reader.players(), System.nanoTime());
+        commitState(event, reader.tick(), reader.delta());
+        acknowledge(reader.tick());
+        listener.onStateReceived(reader.tick(), frameBytes, reader.serverTime());
+        if (reader.gridChanged() || reader.entitiesChanged()) repaintListener.run();
+    }
+
+    private boolean update(UnaryOperator<GameState> change) {
+        synchronized (stateLock) {
+            GameState current = state;
+            GameState next = change.apply(current);
+            state = next;
+            return next != current;
+        }
+    }
+
+    private static byte[] cells(String map, char separator, int width, int height) {
+        byte[] cells = new byte[width * height];
+        int i = 0;
+        for (int k = 0; k < map.length() && i < cells.length; k++) {
+            char c = map.charAt(k);
+            if (c != separator) cells[i++] = (byte) c;
+        }
+        return cells;
+    }
+
+    private static ClientStateEvent startState() {
+        if (!STATE_EVENTS.isEnabled()) return null;
+        ClientStateEvent event = new ClientStateEvent();
+        event.begin();
+        return event;
+    }
+
+    private void commitState(ClientStateEvent event, long tick, boolean delta) {
+        if (event == null) return;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.tick = tick;
+        event.delta = delta;
+        event.bytes = frameBytes;
+        event.commit();
+    }
+
+    private void acknowledge(long tick) {
+        try {
+            write(new AckMessage(tick));
+        } catch (IOException e) {
+            close();
         }
-        state.applySnapshot(message.players(), message.bombs(), message.explosions());
     }
 
     private void handleGameOver(GameOverMessage message) {
         if (state == null) return;
-        state.setGameOver(message.winnerId(), message.winnerName());
+        update(current -> current.withGameOver(message.winnerId(), message.winnerName()));
+        listener.onGameOver(message.winnerId(), message.winnerName());
+        repaintListener.run();
     }
 
-    private void sendInput() {
-        if (!running || writer == null) return;
+    private void localTick() {
         GameState currentState = state;
-        if (currentState == null) return;
-        boolean sendBomb = bomb;
-        bomb = false;
-        if (currentState.isGameOver()) return;
+        if (!running || currentState == null || currentState.isGameOver()) return;
+        int tick = clientTick + 1;
+        clientTick = tick;
+        flushInput(tick);
+        int flags = keys.get() & ~World.BOMB;
+        if (update(current -> prediction.tick(current, tick, flags))) repaintListener.run();
+    }
+
+    private void flushInput(int stamp) {
+        GameState currentState = state;
+        if (!running || writer == null || currentState == null || currentState.isGameOver()) return;
+        long now = System.nanoTime();
+        if (keys.get() == sentKeys && now - lastSentNanos < KEEPALIVE_NANOS) return;
+        int flags = keys.getAndUpdate(k -> k & ~World.BOMB);
         InputMessage inputMsg = new InputMessage(
                 currentState.ownPlayerId(),
-                up,
-                down,
-                left,
-                right,
-                sendBomb
+                (flags & World.UP) != 0,
+                (flags & World.DOWN) != 0,
+                (flags & World.LEFT) != 0,
+                (flags & World.RIGHT) != 0,
+                (flags & World.BOMB) != 0,
+                ++inputSeq,
+                stamp
         );
-        writer.println(inputMsg.serialize());
+        try {
+            write(inputMsg);
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        sentKeys = flags & ~World.BOMB;
+        lastSentNanos = now;
     }
 
     public void setInput(InputField field, boolean value) {
-        switch (field) {
-            case UP -> up = value;
-            case DOWN -> down = value;
-            case LEFT -> left = value;
-            case RIGHT -> right = value;
-            case BOMB -> bomb = value;
+        int bit = switch (field) {
+            case UP -> World.UP;
+            case DOWN -> World.DOWN;
+            case LEFT -> World.LEFT;
+            case RIGHT -> World.RIGHT;
+            case BOMB -> World.BOMB;
+        };
+        if (field == InputField.BOMB && !value) return;
+        int previous = keys.getAndUpdate(k -> value ? k | bit : k & ~bit);
+        if (((previous & bit) != 0) != value && running) {
+            INPUT_TIMER.execute(() -> flushInput(clientTick + 1));
         }
     }
 
+    @Override
     public GameState getStateSnapshot() {
-        return state == null ? null : state.copy();
+        GameState current = state;
+        if (current == null) return null;
+        Interpolation.Sample sample = interpolation.sample(current.ownPlayerId(), System.nanoTime());
+        return current.withPositions(sample.positions(), sample.moving());
     }
 
     public void close() {
         running = false;
         connected = false;
-        inputTimer.cancel();
-
-        for (Thread thread : threads) {
-            if (thread.isAlive()) {
-                thread.interrupt();
-            }
-        }
+        ScheduledFuture<?> task = inputTask;
+        if (task != null) task.cancel(false);
 
         try {
             if (writer != null) writer.close();
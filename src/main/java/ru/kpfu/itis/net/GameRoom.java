@@ -0,0 +1,443 @@
+package ru.kpfu.itis.net;
+
+import ru.kpfu.itis.metrics.TickPhaseEvent;
+import ru.kpfu.itis.model.Bomb;
+import ru.kpfu.itis.model.Explosion;
+import ru.kpfu.itis.model.FireMap;
+import ru.kpfu.itis.model.Player;
+import ru.kpfu.itis.model.Simulation;
+import ru.kpfu.itis.model.SpatialGrid;
+import ru.kpfu.itis.model.World;
+import ru.kpfu.itis.replay.ReplayArchive;
+import ru.kpfu.itis.replay.ReplayRecorder;
+import ru.kpfu.itis.net.message.*;
+
+import jdk.jfr.EventType;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class GameRoom {
+    private static final WireFormat[] FORMATS = WireFormat.values();
+    private static final int HISTORY_TICKS = 32;
+    private static final int INTEREST_BUCKET_SHIFT = 3;
+    private static final int PARALLEL_VIEWS = 8;
+    private static final EventType PHASE_EVENTS = EventType.getEventType(TickPhaseEvent.class);
+    private static final ThreadLocal<ViewScratch> VIEW_SCRATCH = ThreadLocal.withInitial(ViewScratch::new);
+
+    private final int id;
+    private final int width;
+    private final int height;
+    private final int interestRadius;
+    private final int maxPlayers;
+    private final Simulation sim;
+    private final World world;
+    private final FireMap fire;
+    private final Map<Integer, ClientHandler> handlers = new ConcurrentHashMap<>();
+    private final SpatialGrid playerGrid;
+    private final ServerMetrics metrics;
+    private final SnapshotHistory history = new SnapshotHistory(HISTORY_TICKS);
+    private final List<ClientHandler> ready = new ArrayList<>();
+    private final long[] stampedTicks = new long[HISTORY_TICKS];
+    private final long[] tickStarted = new long[HISTORY_TICKS];
+    private long tickStartedMicros;
+    private volatile Snapshot latest;
+    private volatile boolean gameOver;
+    private volatile long tickCostNanos;
+    private volatile int liveBombs;
+    private volatile int liveExplosions;
+    private Player[] viewPlayers = new Player[0];
+    private Bomb[] viewBombs = new Bomb[0];
+    private Explosion[] viewFire = new Explosion[0];
+    private String encodedGrid;
+    private int encodedGridCleared = -1;
+    private ReplayRecorder recorder;
+    private volatile ForkJoinPool viewPool;
+
+    public GameRoom(int id) {
+        this(id, MatchConfig.classic());
+    }
+
+    public GameRoom(int id, MatchConfig config) {
+        this(id, config, new ServerMetrics());
+    }
+
+    public GameRoom(int id, MatchConfig config, ServerMetrics metrics) {
+        this.id = id;
+        this.width = config.width();
+        this.height = config.height();
+        this.interestRadius = config.interestRadius();
+        this.maxPlayers = config.maxPlayers();
+        this.sim = new Simulation(width, height, config.maxPlayers(), ThreadLocalRandom.current().nextLong());
+        this.world = sim.world();
+        this.fire = sim.fire();
+        this.playerGrid = new SpatialGrid(width, height, INTEREST_BUCKET_SHIFT);
+        this.metrics = metrics;
+        sim.setPhaseListener(new PhaseRecorder());
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public long seed() {
+        return sim.seed();
+    }
+
+    public synchronized boolean canJoin() {
+        return sim.canJoin();
+    }
+
+    public boolean isEmpty() {
+        return handlers.isEmpty();
+    }
+
+    public long tickCostNanos() {
+        return tickCostNanos;
+    }
+
+    public int handlerCount() {
+        return handlers.size();
+    }
+
+    public int liveBombs() {
+        return liveBombs;
+    }
+
+    public int liveExplosions() {
+        return liveExplosions;
+    }
+
+    Simulation simulation() {
+        return sim;
+    }
+
+    void setViewPool(ForkJoinPool pool) {
+        viewPool = pool;
+    }
+
+    long tickStartedNanos(long tick) {
+        if (tick <= 0) return 0;
+        int slot = (int) (tick % HISTORY_TICKS);
+        return stampedTicks[slot] == tick ? tickStarted[slot] : 0;
+    }
+
+    synchronized void recordTo(ReplayArchive archive) {
+        recorder = archive.open(id, sim, maxPlayers);
+        sim.setInputListener(recorder);
+    }
+
+    synchronized void finishReplay() {
+        if (recorder != null) recorder.finish();
+    }
+
+    synchronized int join(ClientHandler handler, String name) {
+        int playerId = sim.addPlayer(name);
+        if (playerId > 0) {
+            handlers.put(playerId, handler);
+            if (recorder != null) recorder.join(playerId, name);
+        }
+        return playerId;
+    }
+
+    synchronized void leave(int playerId) {
+        if (handlers.remove(playerId) != null && recorder != null) recorder.leave(playerId);
+        sim.removePlayer(playerId);
+    }
+
+    void applyInput(int playerId, InputMessage input) {
+        int flags = 0;
+        if (input.up()) flags |= World.UP;
+        if (input.down()) flags |= World.DOWN;
+        if (input.left()) flags |= World.LEFT;
+        if (input.right()) flags |= World.RIGHT;
+        if (input.bomb()) flags |= World.BOMB;
+        sim.postInput(playerId, flags, input.seq(), input.tick());
+    }
+
+    synchronized void tick() {
+        long started = System.nanoTime();
+        long next = sim.tick() + 1;
+        int slot = (int) (next % HISTORY_TICKS);
+        tickStarted[slot] = started;
+        stampedTicks[slot] = next;
+        tickStartedMicros = Protocol.clockMicros();
+        gameTick();
+        if (recorder != null) {
+            if (gameOver) recorder.finish();
+            else recorder.endTick();
+        }
+        long cost = System.nanoTime() - started;
+        metrics.recordTick(cost);
+        tickCostNanos = tickCostNanos == 0 ? cost : (tickCostNanos * 7 + cost) / 8;
+    }
+
+    private void gameTick() {
+        sim.step();
+        liveBombs = world.bombCount();
+        liveExplosions = fire.count();
+        if (sim.isGameOver() && !gameOver) {
+            gameOver = true;
+            broadcast(new GameOverMessage(sim.winnerId(), sim.winnerName()));
+        }
+        TickPhaseEvent event = startPhase();
+        long started = System.nanoTime();
+        broadcastState();
+        metrics.recordBroadcast(System.nanoTime() - started);
+        commitPhase(event, "BROADCAST");
+    }
+
+    private void broadcastState() {
+        if (gameOver) return;
+        if (interestRadius > 0) {
+            broadcastViews();
+            return;
+        }
+        Snapshot current = captureSnapshot();
+        history.put(current);
+        latest = current;
+        Map<Long, Message> messages = new HashMap<>();
+        Map<Long, ByteBuffer[]> packets = new HashMap<>();
+        for (ClientHandler h : handlers.values()) {
+            if (!h.isReady()) continue;
+            Snapshot base = history.get(h.lastAckedTick());
+            long key = base != null ? base.tick() : -1;
+            Message message = messages.computeIfAbsent(key,
+                    k -> base != null ? current.deltaFrom(base, sim.clearedLog()) : createStateMessage(current));
+            ByteBuffer[] encoded = packets.computeIfAbsent(key, k -> new ByteBuffer[FORMATS.length * 2]);
+            int variant = h.format().ordinal() * 2 + (h.wantsServerTime() ? 1 : 0);
+            if (encoded[variant] == null) encoded[variant] = h.format().encode(stamp(h, message));
+            h.sendLatest(encoded[variant]);
+        }
+    }
+
+    private void broadcastViews() {
+        prepareViews();
+        encodeGrid();
+        ready.clear();
+        for (ClientHandler h : handlers.values()) {
+            if (h.isReady()) ready.add(h);
+        }
+        ForkJoinPool pool = viewPool;
+        if (pool != null && ready.size() >= PARALLEL_VIEWS) {
+            pool.invoke(new ViewBatch(0, ready.size()));
+            return;
+        }
+        for (ClientHandler h : ready) {
+            sendView(h);
+        }
+    }
+
+    private void sendView(ClientHandler h) {
+        Snapshot view = captureView(h);
+        if (view == null) return;
+        h.views().put(view);
+        Snapshot base = h.views().get(h.lastAckedTick());
+        Message message = base != null ? view.deltaFrom(base, sim.clearedLog(), sim.clearedMask()) : createViewMessage(view);
+        h.sendLatest(h.format().encode(stamp(h, message)));
+    }
+
+    private Message stamp(ClientHandler h, Message message) {
+        if (!h.wantsServerTime()) return message;
+        return switch (message) {
+            case DeltaStateMessage delta -> delta.stamped(tickStartedMicros);
+            case StateMessage state -> state.stamped(tickStartedMicros);
+            default -> message;
+        };
+    }
+
+    private void prepareViews() {
+        int players = world.playerCount();
+        if (viewPlayers.length < players) viewPlayers = new Player[Math.max(players, maxPlayers)];
+        playerGrid.clear(players);
+        for (int i = 0; i < players; i++) {
+            playerGrid.add(i, world.x(i), world.y(i));
+            viewPlayers[i] = world.player(i);
+        }
+        int bombs = world.bombCount();
+        if (viewBombs.length < bombs) viewBombs = new Bomb[Math.max(bombs, viewBombs.length * 2)];
+        for (int i = 0; i < bombs; i++) {
+            viewBombs[i] = world.bomb(i);
+        }
+        int burning = fire.count();
+        if (viewFire.length < burning) viewFire = new Explosion[Math.max(burning, viewFire.length * 2)];
+        for (int i = 0; i < burning; i++) {
+            int cell = fire.cellAt(i);
+            viewFire[i] = new Explosion(fire.x(cell), fire.y(cell), fire.ttl(cell));
+        }
+    }
+
+    private Snapshot captureView(ClientHandler h) {
+        int self = world.indexOf(h.playerId());
+        if (self < 0) return null;
+        int left = Math.max(0, world.x(self) - interestRadius);
+        int top = Math.max(0, world.y(self) - interestRadius);
+        int right = Math.min(width - 1, world.x(self) + interestRadius);
+        int bottom = Math.min(height - 1, world.y(self) + interestRadius);
+
+        Snapshot view = h.views().evicted(sim.tick());
+        if (view == null) view = new Snapshot(width);
+        view.reset(sim.tick(), sim.clearedCount(), left, top, right, bottom);
+        int[] found = VIEW_SCRATCH.get().found(Math.max(world.playerCount(), maxPlayers));
+        int count = playerGrid.query(left, top, right, bottom, found);
+        for (int k = 0; k < count; k++) {
+            int i = found[k];
+            int x = world.x(i);
+            int y = world.y(i);
+            if (x >= left && x <= right && y >= top && y <= bottom) view.add(viewPlayers[i]);
+        }
+        for (int i = 0; i < world.bombCount(); i++) {
+            Bomb b = viewBombs[i];
+            if (b.x() >= left && b.x() <= right && b.y() >= top && b.y() <= bottom) view.add(b);
+        }
+        for (int i = 0; i < fire.count(); i++) {
+            Explosion e = viewFire[i];
+            if (e.x() >= left && e.x() <= right && e.y() >= top && e.y() <= bottom) view.add(e);
+        }
+        return view;
+    }
+
+    private void broadcast(Message message) {
+        ByteBuffer[] packets = new ByteBuffer[FORMATS.length];
+        for (ClientHandler h : handlers.values()) {
+            if (!h.isReady()) continue;
+            int format = h.format().ordinal();
+            if (packets[format] == null) packets[format] = h.format().encode(message);
+            h.send(packets[format]);
+        }
+    }
+
+    private Snapshot captureSnapshot() {
+        Map<Integer, Player> playersMap = new HashMap<>();
+        for (int i = 0; i < world.playerCount(); i++) {
+            playersMap.put(world.playerId(i), world.player(i));
+        }
+        List<Bomb> bombList = new ArrayList<>(world.bombCount());
+        for (int i = 0; i < world.bombCount(); i++) {
+            bombList.add(world.bomb(i));
+        }
+        List<Explosion> explosionsList = new ArrayList<>(fire.count());
+        for (int i = 0; i < fire.count(); i++) {
+            int cell = fire.cellAt(i);
+            explosionsList.add(new Explosion(fire.x(cell), fire.y(cell), fire.ttl(cell)));
+        }
+        return new Snapshot(sim.tick(), width, playersMap, bombList, explosionsList, sim.clearedCount());
+    }
+
+    synchronized void sendInitialState(ClientHandler h) {
+        if (gameOver) return;
+        if (interestRadius > 0) {
+            prepareViews();
+            Snapshot view = captureView(h);
+            if (view == null) return;
+            h.views().put(view);
+            h.sendLatest(h.format().encode(createViewMessage(view)));
+            return;
+        }
+        Snapshot snapshot = latest != null ? latest : captureSnapshot();
+        h.sendLatest(h.format().encode(createStateMessage(snapshot)));
+    }
+
+    private StateMessage createStateMessage(Snapshot snapshot) {
+        return new StateMessage(snapshot.tick(), snapshot.players(), new ArrayList<>(snapshot.bombs()),
+                new ArrayList<>(snapshot.explosions()), encodeGrid());
+    }
+
+    private StateMessage createViewMessage(Snapshot view) {
+        int row = width + Protocol.getGridRowDelimiter().length();
+        String rows = encodeGrid().substring(view.top() * row, (view.bottom() + 1) * row - 1);
+        return new StateMessage(view.tick(), view.players(), new ArrayList<>(view.bombs()),
+                new ArrayList<>(view.explosions()), rows, view.top());
+    }
+
+    WelcomeMessage createWelcomeMessage(int playerId, WireFormat format) {
+        return new WelcomeMessage(playerId, width, height, joinRows(Protocol.getMapRowDelimiter()), format);
+    }
+
+    String encodeGrid() {
+        if (encodedGridCleared != sim.clearedCount()) {
+            encodedGrid = joinRows(Protocol.getGridRowDelimiter());
+            encodedGridCleared = sim.clearedCount();
+        }
+        return encodedGrid;
+    }
+
+    private String joinRows(String delimiter) {
+        StringBuilder sb = new StringBuilder(height * (width + delimiter.length()));
+        for (int y = 0; y < height; y++) {
+            if (y > 0) sb.append(delimiter);
+            sb.append(sim.row(y));
+        }
+        return sb.toString();
+    }
+
+    private static TickPhaseEvent startPhase() {
+        if (!PHASE_EVENTS.isEnabled()) return null;
+        TickPhaseEvent event = new TickPhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    private void commitPhase(TickPhaseEvent event, String phase) {
+        if (event == null) return;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.room = id;
+        event.tick = sim.tick();
+        event.phase = phase;
+        event.commit();
+    }
+
+    private class PhaseRecorder implements Simulation.PhaseListener {
+        private TickPhaseEvent event;
+
+        @Override
+        public void phaseStarted(Simulation.Phase phase) {
+            event = startPhase();
+        }
+
+        @Override
+        public void onPhase(Simulation.Phase phase, long nanos) {
+            metrics.onPhase(phase, nanos);
+            commitPhase(event, phase.name());
+        }
+    }
+
+    private class ViewBatch extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        ViewBatch(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_VIEWS) {
+                for (int i = from; i < to; i++) {
+                    sendView(ready.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ViewBatch(from, middle), new ViewBatch(middle, to));
+        }
+    }
+
+    private static class ViewScratch {
+        private int[] found = new int[0];
+
+        int[] found(int capacity) {
+            if (found.length < capacity) found = new int[capacity];
+            return found;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ru.kpfu.itis.net;
+
+import ru.kpfu.itis.model.Player;
+import ru.kpfu.itis.model.Position;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+class Interpolation {
+    private static final int CAPACITY = 32;
+    private static final long DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final double MAX_EXTRAPOLATION_TICKS = 1.0;
+    private static final double CLOCK_DRIFT = 0.01;
+
+    private record Frame(long tick, Map<Integer, Player> players) {
+    }
+
+    private record Timeline(Frame[] frames, double offset) {
+    }
+
+    record Sample(Map<Integer, Position> positions, boolean moving) {
+    }
+
+    private volatile Timeline timeline;
+
+    void add(long tick, Map<Integer, Player> players, long receivedNanos) {
+        Timeline current = timeline;
+        double sample = receivedNanos - (double) tick * RoomScheduler.PERIOD_NANOS;
+        if (current == null) {
+            timeline = new Timeline(new Frame[]{new Frame(tick, players)}, sample);
+            return;
+        }
+        Frame[] frames = current.frames();
+        if (tick <= frames[frames.length - 1].tick()) return;
+        int kept = Math.min(frames.length, CAPACITY - 1);
+        Frame[] next = Arrays.copyOfRange(frames, frames.length - kept, frames.length + 1);
+        next[kept] = new Frame(tick, players);
+
+        double offset = current.offset();
+        if (sample < offset) offset = sample;
+        else offset += (sample - offset) * CLOCK_DRIFT;
+        timeline = new Timeline(next, offset);
+    }
+
+    Sample sample(int ownPlayerId, long nowNanos) {
+        Timeline current = timeline;
+        if (current == null) return new Sample(Map.of(), false);
+        Frame[] frames = current.frames();
+        double renderTick = (nowNanos - DELAY_NANOS - current.offset()) / RoomScheduler.PERIOD_NANOS;
+
+        int from = frames.length - 1;
+        while (from >= 0 && frames[from].tick() > renderTick) {
+            from--;
+        }
+
+        Map<Integer, Position> positions = new HashMap<>();
+        if (from < 0) {
+            for (Player p : frames[0].players().values()) {
+                if (p.id() != ownPlayerId) positions.put(p.id(), new Position(p.x(), p.y()));
+            }
+            return new Sample(positions, true);
+        }
+        if (from == frames.length - 1) return extrapolate(frames, ownPlayerId, renderTick);
+
+        Frame older = frames[from];
+        Frame newer = frames[from + 1];
+        double t = (renderTick - older.tick()) / (newer.tick() - older.tick());
+        for (Player b : newer.players().values()) {
+            if (b.id() == ownPlayerId) continue;
+            Player a = older.players().get(b.id());
+            positions.put(b.id(), adjacent(a, b) ? lerp(a, b, t) : new Position(b.x(), b.y()));
+        }
+        return new Sample(positions, changesAfter(frames, from, ownPlayerId));
+    }
+
+    private static boolean changesAfter(Frame[] frames, int from, int ownPlayerId) {
+        Map<Integer, Player> base = frames[from].players();
+        for (int i = from + 1; i < frames.length; i++) {
+            for (Player b : frames[i].players().values()) {
+                if (b.id() == ownPlayerId) continue;
+                Player a = base.get(b.id());
+                if (a == null || a.x() != b.x() || a.y() != b.y()) return true;
+            }
+        }
+        return false;
+    }
+
+    private static Sample extrapolate(Frame[] frames, int ownPlayerId, double renderTick) {
+        Frame newest = frames[frames.length - 1];
+        Frame previous = frames.length > 1 ? frames[frames.length - 2] : null;
+
+        double ahead = Math.min(renderTick - newest.tick(), MAX_EXTRAPOLATION_TICKS);
+        boolean moving = false;
+        Map<Integer, Position> positions = new HashMap<>();
+        for (Player b : newest.players().values()) {
+            if (b.id() == ownPlayerId) continue;
+            Player a = previous != null ? previous.players().get(b.id()) : null;
+            if (!b.alive() || !adjacent(a, b)) {
+                positions.put(b.id(), new Position(b.x(), b.y()));
+                continue;
+            }
+            double t = 1 + ahead / (newest.tick() - previous.tick());
+            Position p = lerp(a, b, t);
+            positions.put(b.id(), new Position(clamp(p.x(), b.x()), clamp(p.y(), b.y())));
+            moving |= ahead < MAX_EXTRAPOLATION_TICKS && (a.x() != b.x() || a.y() != b.y());
+        }
+        return new Sample(positions, moving);
+    }
+
+    private static boolean adjacent(Player a, Player b) {
+        return a != null && Math.abs(a.x() - b.x()) + Math.abs(a.y() - b.y()) <= 1;
+    }
+
+    private static Position lerp(Player a, Player b, double t) {
+        return new Position(a.x() + (b.x() - a.x()) * t, a.y() + (b.y() - a.y()) * t);
+    }
+
+    private static double clamp(double value, int tile) {
+        return Math.max(tile - 0.5, Math.min(tile + 0.5, value));
+    }
+}
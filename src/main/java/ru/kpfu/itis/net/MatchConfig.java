@@ -0,0 +1,30 @@
+package ru.kpfu.itis.net;
+
+import ru.kpfu.itis.model.SpawnAllocator;
+
+public record MatchConfig(int width, int height, int maxPlayers, int interestRadius) {
+    public static final int MIN_SIDE = 7;
+    public static final int MAX_SIDE = 255;
+
+    public MatchConfig {
+        if (width < MIN_SIDE || height < MIN_SIDE || width > MAX_SIDE || height > MAX_SIDE) {
+            throw new IllegalArgumentException("Размер карты должен быть от " + MIN_SIDE + " до " + MAX_SIDE);
+        }
+        if (maxPlayers < 1 || maxPlayers > SpawnAllocator.capacity(width, height)) {
+            throw new IllegalArgumentException("Слишком много игроков для карты " + width + "x" + height);
+        }
+        if (interestRadius < 0) throw new IllegalArgumentException("Радиус видимости не может быть отрицательным");
+    }
+
+    public MatchConfig(int width, int height, int maxPlayers) {
+        this(width, height, maxPlayers, 0);
+    }
+
+    public static MatchConfig classic() {
+        return new MatchConfig(15, 13, 4);
+    }
+
+    public static MatchConfig event() {
+        return new MatchConfig(101, 101, 100, 12);
+    }
+}
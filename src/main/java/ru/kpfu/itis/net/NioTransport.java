@@ -0,0 +1,310 @@
+package ru.kpfu.itis.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+public class NioTransport {
+    private static final long SWEEP_MILLIS = 1000;
+    private static final long SWEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(SWEEP_MILLIS);
+
+    private final int port;
+    private final IoLoop[] loops;
+    private final Function<Connection, Connection.Listener> listenerFactory;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong slowDisconnects = new AtomicLong();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder ioErrors = new LongAdder();
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running;
+    private int nextLoop;
+
+    public NioTransport(int port, int ioThreads, Function<Connection, Connection.Listener> listenerFactory) {
+        this.port = port;
+        this.listenerFactory = listenerFactory;
+        this.loops = new IoLoop[Math.max(1, ioThreads)];
+    }
+
+    public static int defaultIoThreads() {
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        running = true;
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new IoLoop(i);
+        }
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        for (IoLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        for (IoLoop loop : loops) {
+            if (loop != null) loop.selector.wakeup();
+        }
+        try {
+            if (serverChannel != null) serverChannel.close();
+        } catch (IOException e) {
+            ioError(e, true);
+        }
+    }
+
+    public int connectionCount() {
+        return connections.size();
+    }
+
+    public int outboundQueueDepth() {
+        int depth = 0;
+        for (Connection connection : connections) {
+            depth += connection.queueDepth();
+        }
+        return depth;
+    }
+
+    public long outboundQueuedBytes() {
+        long bytes = 0;
+        for (Connection connection : connections) {
+            bytes += connection.queuedBytes();
+        }
+        return bytes;
+    }
+
+    public long droppedFrames() {
+        long dropped = droppedFrames.get();
+        for (Connection connection : connections) {
+            dropped += connection.droppedFrames();
+        }
+        return dropped;
+    }
+
+    public long slowDisconnects() {
+        return slowDisconnects.get();
+    }
+
+    public long bytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long bytesOut() {
+        return bytesOut.sum();
+    }
+
+    public long ioErrors() {
+        return ioErrors.sum();
+    }
+
+    public Map<String, Long> bytesInByClient() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Connection connection : connections) {
+            values.put(connection.peer(), connection.bytesIn());
+        }
+        return values;
+    }
+
+    public Map<String, Long> bytesOutByClient() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Connection connection : connections) {
+            values.put(connection.peer(), connection.bytesOut());
+        }
+        return values;
+    }
+
+    private void ioError(IOException e, boolean log) {
+        ioErrors.increment();
+        if (log) System.err.println("Ошибка ввода-вывода сервера: " + e);
+    }
+
+    void closed(Connection connection) {
+        if (connections.remove(connection)) droppedFrames.addAndGet(connection.droppedFrames());
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                IoLoop loop = loops[nextLoop];
+                nextLoop = (nextLoop + 1) % loops.length;
+                loop.requestRegister(new Connection(loop, channel));
+            }
+        } catch (IOException e) {
+            ioError(e, true);
+        }
+    }
+
+    class IoLoop {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Connection> pendingRegister = new ConcurrentLinkedQueue<>();
+        private final Queue<Connection> pendingFlush = new ConcurrentLinkedQueue<>();
+        private final Queue<Connection> pendingClose = new ConcurrentLinkedQueue<>();
+
+        IoLoop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this::run, "nio-io-" + index);
+            thread.setDaemon(true);
+        }
+
+        void requestRegister(Connection connection) {
+            pendingRegister.add(connection);
+            selector.wakeup();
+        }
+
+        void requestClose(Connection connection) {
+            pendingClose.add(connection);
+            selector.wakeup();
+        }
+
+        void dropSlow(Connection connection) {
+            if (!connection.isOpen()) return;
+            slowDisconnects.incrementAndGet();
+            connection.close();
+        }
+
+        void closed(Connection connection) {
+            NioTransport.this.closed(connection);
+        }
+
+        void countIn(int bytes) {
+            bytesIn.add(bytes);
+        }
+
+        void countOut(int bytes) {
+            bytesOut.add(bytes);
+        }
+
+        void ioError(IOException e) {
+            NioTransport.this.ioError(e, false);
+        }
+
+        void peerError(Connection connection, RuntimeException e) {
+            ioErrors.increment();
+            System.err.println("Ошибка обработки данных клиента " + connection.peer() + ": " + e);
+            try {
+                connection.close();
+            } catch (RuntimeException closeError) {
+                System.err.println("Ошибка закрытия соединения " + connection.peer() + ": " + closeError);
+            }
+        }
+
+        void requestFlush(Connection connection) {
+            pendingFlush.add(connection);
+            if (Thread.currentThread() != thread) selector.wakeup();
+        }
+
+        private void run() {
+            try {
+                long nextSweep = System.nanoTime() + SWEEP_NANOS;
+                while (running) {
+                    selector.select(SWEEP_MILLIS);
+                    registerPending();
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        try {
+                            handle(key);
+                        } catch (RuntimeException e) {
+                            if (key.attachment() instanceof Connection connection) {
+                                peerError(connection, e);
+                            } else {
+                                System.err.println("Ошибка приёма соединения: " + e);
+                            }
+                        }
+                    }
+                    Connection connection;
+                    while ((connection = pendingFlush.poll()) != null) {
+                        try {
+                            connection.flush();
+                        } catch (RuntimeException e) {
+                            peerError(connection, e);
+                        }
+                    }
+                    while ((connection = pendingClose.poll()) != null) {
+                        try {
+                            dropSlow(connection);
+                        } catch (RuntimeException e) {
+                            peerError(connection, e);
+                        }
+                    }
+                    if (System.nanoTime() - nextSweep >= 0) {
+                        sweepStalled();
+                        nextSweep = System.nanoTime() + SWEEP_NANOS;
+                    }
+                }
+            } catch (IOException e) {
+                NioTransport.this.ioError(e, true);
+            } catch (ClosedSelectorException ignored) {
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Connection connection) connection.close();
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    NioTransport.this.ioError(e, true);
+                }
+            }
+        }
+
+        private void sweepStalled() {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection connection && connection.isStalled()) {
+                    dropSlow(connection);
+                }
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            if (!key.isValid()) return;
+            if (key.isAcceptable()) {
+                accept();
+                return;
+            }
+            Connection connection = (Connection) key.attachment();
+            if (key.isReadable()) connection.onReadable();
+            if (key.isValid() && key.isWritable()) connection.flush();
+        }
+
+        private void registerPending() {
+            Connection connection;
+            while ((connection = pendingRegister.poll()) != null) {
+                try {
+                    SelectionKey key = connection.channel().register(selector, SelectionKey.OP_READ, connection);
+                    connections.add(connection);
+                    connection.register(key, listenerFactory.apply(connection));
+                } catch (IOException e) {
+                    ioError(e);
+                    connection.close();
+                } catch (RuntimeException e) {
+                    peerError(connection, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package ru.kpfu.itis.net;
+
+import ru.kpfu.itis.metrics.SendEvent;
+
+import jdk.jfr.EventType;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+class OutboundQueue {
+    private static final int LATEST_BUDGET_BYTES = 256 * 1024;
+    private static final int HARD_LIMIT_BYTES = 4 * 1024 * 1024;
+    private static final long STALL_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final EventType SEND_EVENTS = EventType.getEventType(SendEvent.class);
+
+    private final String peer;
+    private final long stallTimeoutNanos;
+    private final ArrayDeque<ByteBuffer> frames = new ArrayDeque<>();
+    private ByteBuffer pendingLatest;
+    private ByteBuffer inFlight;
+    private int inFlightSize;
+    private int queuedBytes;
+    private long stalledSince;
+    private boolean stallReported;
+    private long dropped;
+
+    OutboundQueue(String peer) {
+        this(peer, STALL_TIMEOUT_NANOS);
+    }
+
+    OutboundQueue(String peer, long stallTimeoutNanos) {
+        this.peer = peer;
+        this.stallTimeoutNanos = stallTimeoutNanos;
+    }
+
+    synchronized boolean offer(ByteBuffer frame, boolean latest) {
+        int size = frame.remaining();
+        if (latest) {
+            if (pendingLatest != null) {
+                remove(pendingLatest);
+                pendingLatest = null;
+                markStalled();
+                emit("coalesced", size, true);
+            }
+            if (queuedBytes + size > LATEST_BUDGET_BYTES) {
+                markStalled();
+                emit("dropped", size, true);
+                return true;
+            }
+            pendingLatest = frame;
+        } else if (queuedBytes + size > HARD_LIMIT_BYTES) {
+            emit("rejected", size, false);
+            return false;
+        }
+        frames.add(frame);
+        queuedBytes += size;
+        return true;
+    }
+
+    synchronized ByteBuffer head() {
+        if (inFlight == null) {
+            inFlight = frames.poll();
+            if (inFlight == null) return null;
+            if (inFlight == pendingLatest) pendingLatest = null;
+            inFlightSize = inFlight.remaining();
+        }
+        return inFlight;
+    }
+
+    synchronized void completeHead() {
+        if (inFlight == null) return;
+        queuedBytes -= inFlightSize;
+        inFlight = null;
+        inFlightSize = 0;
+        if (frames.isEmpty()) {
+            stalledSince = 0;
+            stallReported = false;
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return inFlight == null && frames.isEmpty();
+    }
+
+    synchronized boolean isOverBudget() {
+        boolean over = stalledSince != 0 && System.nanoTime() - stalledSince > stallTimeoutNanos;
+        if (over && !stallReported) {
+            stallReported = true;
+            emit("stalled", 0, false);
+        }
+        return over;
+    }
+
+    synchronized int depth() {
+        return frames.size() + (inFlight != null ? 1 : 0);
+    }
+
+    synchronized int queuedBytes() {
+        return queuedBytes;
+    }
+
+    synchronized long dropped() {
+        return dropped;
+    }
+
+    synchronized void clear() {
+        frames.clear();
+        pendingLatest = null;
+        inFlight = null;
+        queuedBytes = 0;
+    }
+
+    private void remove(ByteBuffer frame) {
+        Iterator<ByteBuffer> it = frames.iterator();
+        while (it.hasNext()) {
+            if (it.next() == frame) {
+                it.remove();
+                queuedBytes -= frame.remaining();
+                return;
+            }
+        }
+    }
+
+    private void markStalled() {
+        dropped++;
+        if (stalledSince == 0) stalledSince = System.nanoTime();
+    }
+
+    private void emit(String reason, int bytes, boolean latest) {
+        if (!SEND_EVENTS.isEnabled()) return;
+        SendEvent event = new SendEvent();
+        if (!event.shouldCommit()) return;
+        event.peer = peer;
+        event.reason = reason;
+        event.bytes = bytes;
+        event.latest = latest;
+        event.queueDepth = frames.size() + (inFlight != null ? 1 : 0);
+        event.queuedBytes = queuedBytes;
+        event.commit();
+    }
+}
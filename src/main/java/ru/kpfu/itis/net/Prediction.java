@@ -0,0 +1,70 @@
+package ru.kpfu.itis.net;
+
+import ru.kpfu.itis.model.GameState;
+import ru.kpfu.itis.model.Player;
+import ru.kpfu.itis.model.Simulation;
+import ru.kpfu.itis.model.World;
+
+import java.util.ArrayDeque;
+
+class Prediction {
+    private static final int MAX_PENDING = 64;
+
+    private record PendingInput(int tick, int flags) {
+    }
+
+    private final ArrayDeque<PendingInput> pending = new ArrayDeque<>();
+    private boolean known;
+    private int x;
+    private int y;
+    private int cooldown;
+    private long serverTick;
+    private int serverX;
+    private int serverY;
+
+    synchronized GameState tick(GameState state, int tick, int flags) {
+        if (!known) return state;
+        if (pending.size() == MAX_PENDING) pending.poll();
+        pending.add(new PendingInput(tick, flags));
+        return step(state, flags) ? state.withOwnPosition(x, y) : state;
+    }
+
+    synchronized GameState reconcile(GameState state, Player self, long tick) {
+        if (self == null || !self.alive()) {
+            known = false;
+            pending.clear();
+            return state;
+        }
+        while (!pending.isEmpty() && pending.peek().tick() <= self.inputTick()) {
+            pending.poll();
+        }
+        boolean moved = known && tick == serverTick + 1 && (self.x() != serverX || self.y() != serverY);
+        known = true;
+        serverTick = tick;
+        serverX = x = self.x();
+        serverY = y = self.y();
+        cooldown = moved ? Simulation.MOVE_COOLDOWN - 1 : 0;
+        for (PendingInput input : pending) {
+            step(state, input.flags());
+        }
+        return state.withOwnPosition(x, y);
+    }
+
+    private boolean step(GameState state, int flags) {
+        if (cooldown > 0) {
+            cooldown--;
+            return false;
+        }
+        int dx = 0;
+        int dy = 0;
+        if ((flags & World.UP) != 0) dy = -1;
+        else if ((flags & World.DOWN) != 0) dy = 1;
+        else if ((flags & World.LEFT) != 0) dx = -1;
+        else if ((flags & World.RIGHT) != 0) dx = 1;
+        if ((dx == 0 && dy == 0) || !state.canStep(x + dx, y + dy)) return false;
+        x += dx;
+        y += dy;
+        cooldown = Simulation.MOVE_COOLDOWN - 1;
+        return true;
+    }
+}
@@ -5,6 +5,9 @@ import ru.kpfu.itis.model.Explosion;
 import ru.kpfu.itis.model.Player;
 import ru.kpfu.itis.net.message.*;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -20,6 +23,12 @@ public class Protocol {
     private static final String TOKEN_BOMB = "B";
     private static final String TOKEN_EXPLOSION = "F";
     private static final String TOKEN_MAP = "M";
+    private static final String TOKEN_REMOVED_PLAYER = "RP";
+    private static final String TOKEN_REMOVED_BOMB = "RB";
+    private static final String TOKEN_REMOVED_EXPLOSION = "RF";
+    private static final String TOKEN_CLEARED_CELL = "C";
+    private static final String TOKEN_SERVER_TIME = "T";
+    private static final String HELLO_SERVER_TIME = "TIME";
 
     public static Message parse(String line) {
         if (line == null || line.isBlank()) return null;
@@ -35,15 +44,36 @@ public class Protocol {
                 case INPUT -> parseInput(parts);
                 case STATE -> parseState(parts);
                 case GAME_OVER -> parseGameOver(parts);
+                case DELTA -> parseDelta(parts);
+                case ACK -> parseAck(parts);
             };
         } catch (IllegalArgumentException e) {
             return null;
         }
     }
 
+    public static Message parse(ByteBuffer frame) {
+        if (!frame.hasRemaining()) return null;
+        return parse(StandardCharsets.UTF_8.decode(frame).toString());
+    }
+
+    public static ByteBuffer frame(String packet) {
+        byte[] bytes = packet.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 1);
+        buffer.put(bytes).put((byte) '\n').flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    public static long clockMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1000;
+    }
+
     private static HelloMessage parseHello(String[] parts) {
         if (parts.length < 2) return null;
-        return new HelloMessage(parts[1]);
+        if (parts.length < 3) return new HelloMessage(parts[1]);
+        boolean serverTime = parts.length > 3 && parts[3].equals(HELLO_SERVER_TIME);
+        return new HelloMessage(parts[1], WireFormat.valueOf(parts[2]), serverTime);
     }
 
     private static WelcomeMessage parseWelcome(String[] parts) {
@@ -52,7 +82,8 @@ public class Protocol {
         int w = Integer.parseInt(parts[2]);
         int h = Integer.parseInt(parts[3]);
         String map = parts[4];
-        return new WelcomeMessage(id, w, h, map);
+        if (parts.length < 6) return new WelcomeMessage(id, w, h, map);
+        return new WelcomeMessage(id, w, h, map, WireFormat.valueOf(parts[5]));
     }
 
     private static InputMessage parseInput(String[] parts) {
@@ -63,7 +94,9 @@ public class Protocol {
         boolean left = Boolean.parseBoolean(parts[4]);
         boolean right = Boolean.parseBoolean(parts[5]);
         boolean bomb = Boolean.parseBoolean(parts[6]);
-        return new InputMessage(id, up, down, left, right, bomb);
+        int seq = parts.length > 7 ? Integer.parseInt(parts[7]) : 0;
+        int tick = parts.length > 8 ? Integer.parseInt(parts[8]) : 0;
+        return new InputMessage(id, up, down, left, right, bomb, seq, tick);
     }
 
     private static StateMessage parseState(String[] parts) {
@@ -73,6 +106,8 @@ public class Protocol {
         List<Bomb> bombs = new ArrayList<>();
         List<Explosion> explosions = new ArrayList<>();
         String grid = null;
+        int gridTop = 0;
+        long serverTime = 0;
 
         for (int i = 2; i < parts.length; i++) {
             String token = parts[i];
@@ -88,7 +123,8 @@ public class Protocol {
                     int y = Integer.parseInt(t[3]);
                     boolean alive = Boolean.parseBoolean(t[4]);
                     int bombsAvailable = Integer.parseInt(t[5]);
-                    players.put(id, new Player(id, t[6], x, y, alive, bombsAvailable));
+                    int inputTick = t.length > 7 ? Integer.parseInt(t[7]) : 0;
+                    players.put(id, new Player(id, t[6], x, y, alive, bombsAvailable, inputTick));
                 }
                 case TOKEN_BOMB -> {
                     if (t.length < 5) continue;
@@ -108,11 +144,79 @@ public class Protocol {
                 case TOKEN_MAP -> {
                     if (t.length < 2) continue;
                     grid = t[1];
+                    if (t.length > 2) gridTop = Integer.parseInt(t[2]);
+                }
+                case TOKEN_SERVER_TIME -> {
+                    if (t.length >= 2) serverTime = Long.parseLong(t[1]);
                 }
             }
         }
 
-        return new StateMessage(tick, players, bombs, explosions, grid != null ? grid : "");
+        return new StateMessage(tick, players, bombs, explosions, grid != null ? grid : "", gridTop, serverTime);
+    }
+
+    private static DeltaStateMessage parseDelta(String[] parts) {
+        if (parts.length < 3) return null;
+        long tick = Long.parseLong(parts[1]);
+        long baseTick = Long.parseLong(parts[2]);
+        List<Player> players = new ArrayList<>();
+        List<Integer> removedPlayers = new ArrayList<>();
+        List<Bomb> bombs = new ArrayList<>();
+        List<Integer> removedBombs = new ArrayList<>();
+        List<Explosion> explosions = new ArrayList<>();
+        List<Integer> removedExplosions = new ArrayList<>();
+        List<Integer> clearedCells = new ArrayList<>();
+        long serverTime = 0;
+
+        for (int i = 3; i < parts.length; i++) {
+            String token = parts[i];
+            if (token.isBlank()) continue;
+            String[] t = token.split(TOKEN_DELIMITER, -1);
+
+            switch (t[0]) {
+                case TOKEN_PLAYER -> {
+                    if (t.length < 7) continue;
+                    int id = Integer.parseInt(t[1]);
+                    int x = Integer.parseInt(t[2]);
+                    int y = Integer.parseInt(t[3]);
+                    boolean alive = Boolean.parseBoolean(t[4]);
+                    int bombsAvailable = Integer.parseInt(t[5]);
+                    int inputTick = t.length > 7 ? Integer.parseInt(t[7]) : 0;
+                    players.add(new Player(id, t[6].isEmpty() ? null : t[6], x, y, alive, bombsAvailable, inputTick));
+                }
+                case TOKEN_BOMB -> {
+                    if (t.length < 5) continue;
+                    bombs.add(new Bomb(Integer.parseInt(t[1]), Integer.parseInt(t[2]), Integer.parseInt(t[3]), Integer.parseInt(t[4])));
+                }
+                case TOKEN_EXPLOSION -> {
+                    if (t.length < 4) continue;
+                    explosions.add(new Explosion(Integer.parseInt(t[1]), Integer.parseInt(t[2]), Integer.parseInt(t[3])));
+                }
+                case TOKEN_REMOVED_PLAYER -> {
+                    if (t.length >= 2) removedPlayers.add(Integer.parseInt(t[1]));
+                }
+                case TOKEN_REMOVED_BOMB -> {
+                    if (t.length >= 2) removedBombs.add(Integer.parseInt(t[1]));
+                }
+                case TOKEN_REMOVED_EXPLOSION -> {
+                    if (t.length >= 2) removedExplosions.add(Integer.parseInt(t[1]));
+                }
+                case TOKEN_CLEARED_CELL -> {
+                    if (t.length >= 2) clearedCells.add(Integer.parseInt(t[1]));
+                }
+                case TOKEN_SERVER_TIME -> {
+                    if (t.length >= 2) serverTime = Long.parseLong(t[1]);
+                }
+            }
+        }
+
+        return new DeltaStateMessage(tick, baseTick, players, removedPlayers, bombs, removedBombs,
+                explosions, removedExplosions, clearedCells, serverTime);
+    }
+
+    private static AckMessage parseAck(String[] parts) {
+        if (parts.length < 2) return null;
+        return new AckMessage(Long.parseLong(parts[1]));
     }
 
     private static GameOverMessage parseGameOver(String[] parts) {
@@ -153,4 +257,28 @@ public class Protocol {
     public static String getTokenMap() {
         return TOKEN_MAP;
     }
+
+    public static String getTokenRemovedPlayer() {
+        return TOKEN_REMOVED_PLAYER;
+    }
+
+    public static String getTokenRemovedBomb() {
+        return TOKEN_REMOVED_BOMB;
+    }
+
+    public static String getTokenRemovedExplosion() {
+        return TOKEN_REMOVED_EXPLOSION;
+    }
+
+    public static String getTokenClearedCell() {
+        return TOKEN_CLEARED_CELL;
+    }
+
+    public static String getTokenServerTime() {
+        return TOKEN_SERVER_TIME;
+    }
+
+    public static String getHelloServerTime() {
+        return HELLO_SERVER_TIME;
+    }
 }
@@ -0,0 +1,162 @@
+package ru.kpfu.itis.net;
+
+import ru.kpfu.itis.metrics.Histogram;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RoomScheduler {
+    private static final long PERIOD_MILLIS = 70;
+    static final long PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(PERIOD_MILLIS);
+    private static final long BUDGET_NANOS = PERIOD_NANOS * 3 / 4;
+    private static final int REBALANCE_COOLDOWN_PASSES = 10;
+
+    private final TickWorker[] workers;
+    private final ForkJoinPool views;
+    private final AtomicLong overruns = new AtomicLong();
+    private final Histogram lag;
+
+    public RoomScheduler(int workerCount) {
+        this(workerCount, new Histogram());
+    }
+
+    public RoomScheduler(int workerCount, Histogram lag) {
+        this.lag = lag;
+        workers = new TickWorker[Math.max(1, workerCount)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new TickWorker(i);
+        }
+        views = new ForkJoinPool(workers.length, pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("room-view-" + t.getPoolIndex());
+            return t;
+        }, null, false);
+    }
+
+    public void start() {
+        for (TickWorker worker : workers) {
+            worker.start();
+        }
+    }
+
+    public void stop() {
+        for (TickWorker worker : workers) {
+            worker.loop.shutdownNow();
+        }
+        views.shutdownNow();
+    }
+
+    public synchronized void add(GameRoom room) {
+        room.setViewPool(views);
+        leastLoaded(null).rooms.add(room);
+    }
+
+    public synchronized void remove(GameRoom room) {
+        for (TickWorker worker : workers) {
+            worker.rooms.remove(room);
+        }
+    }
+
+    public int workerCount() {
+        return workers.length;
+    }
+
+    public long overruns() {
+        return overruns.get();
+    }
+
+    public long lagNanos() {
+        long max = 0;
+        for (TickWorker worker : workers) {
+            max = Math.max(max, worker.lastLag);
+        }
+        return max;
+    }
+
+    private TickWorker leastLoaded(TickWorker exclude) {
+        TickWorker best = null;
+        for (TickWorker worker : workers) {
+            if (worker == exclude) continue;
+            if (best == null || worker.load() < best.load()
+                    || (worker.load() == best.load() && worker.rooms.size() < best.rooms.size())) {
+                best = worker;
+            }
+        }
+        return best;
+    }
+
+    private synchronized void rebalance(TickWorker from) {
+        TickWorker to = leastLoaded(from);
+        if (to == null) return;
+        long fromLoad = from.load();
+        long toLoad = to.load();
+        GameRoom candidate = null;
+        for (GameRoom room : from.rooms) {
+            long cost = room.tickCostNanos();
+            if (toLoad + cost >= fromLoad - cost) continue;
+            if (candidate == null || cost > candidate.tickCostNanos()) candidate = room;
+        }
+        if (candidate == null) return;
+        from.rooms.remove(candidate);
+        to.rooms.add(candidate);
+    }
+
+    private class TickWorker {
+        private final ScheduledExecutorService loop;
+        private final List<GameRoom> rooms = new CopyOnWriteArrayList<>();
+        private long firstPass;
+        private long passes;
+        private long cooldown;
+        private volatile long lastLag;
+
+        TickWorker(int index) {
+            loop = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "room-tick-" + index);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        void start() {
+            loop.scheduleAtFixedRate(this::pass, 100, PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        long load() {
+            long load = 0;
+            for (GameRoom room : rooms) {
+                load += room.tickCostNanos();
+            }
+            return load;
+        }
+
+        private void pass() {
+            long started = System.nanoTime();
+            if (passes == 0) firstPass = started;
+            long lag = Math.max(0, started - firstPass - passes * PERIOD_NANOS);
+            passes++;
+            lastLag = lag;
+            RoomScheduler.this.lag.record(lag);
+            for (GameRoom room : rooms) {
+                try {
+                    room.tick();
+                } catch (RuntimeException e) {
+                    System.err.println("Ошибка в комнате " + room.id() + ": " + e);
+                }
+            }
+            long spent = System.nanoTime() - started;
+            if (spent > PERIOD_NANOS || lag > PERIOD_NANOS) overruns.incrementAndGet();
+            if (cooldown > 0) {
+                cooldown--;
+            } else if (spent > BUDGET_NANOS || lag > BUDGET_NANOS) {
+                rebalance(this);
+                cooldown = REBALANCE_COOLDOWN_PASSES;
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ru.kpfu.itis.net;
+
+import ru.kpfu.itis.metrics.Histogram;
+import ru.kpfu.itis.metrics.MetricsRegistry;
+import ru.kpfu.itis.model.Simulation;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class ServerMetrics implements Simulation.PhaseListener {
+    private final MetricsRegistry registry;
+    private final Histogram tick;
+    private final Histogram[] phases = new Histogram[Simulation.Phase.values().length];
+    private final Histogram broadcast;
+    private final Histogram ackLatency;
+    private final LongAdder messagesParsed;
+    private final LongAdder parseFailures;
+
+    public ServerMetrics() {
+        this(new MetricsRegistry());
+    }
+
+    public ServerMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+        this.tick = registry.histogram("game_tick_ns");
+        this.phases[Simulation.Phase.PLAYERS.ordinal()] = registry.histogram("update_players_ns");
+        this.phases[Simulation.Phase.BOMBS.ordinal()] = registry.histogram("update_bombs_ns");
+        this.phases[Simulation.Phase.EXPLOSIONS.ordinal()] = registry.histogram("update_explosions_ns");
+        this.phases[Simulation.Phase.GAME_OVER.ordinal()] = registry.histogram("check_game_over_ns");
+        this.broadcast = registry.histogram("broadcast_state_ns");
+        this.ackLatency = registry.histogram("tick_to_ack_ns");
+        this.messagesParsed = registry.counter("messages_parsed_total");
+        this.parseFailures = registry.counter("parse_failures_total");
+    }
+
+    public MetricsRegistry registry() {
+        return registry;
+    }
+
+    public Histogram ackLatency() {
+        return ackLatency;
+    }
+
+    @Override
+    public void onPhase(Simulation.Phase phase, long nanos) {
+        phases[phase.ordinal()].record(nanos);
+    }
+
+    void recordTick(long nanos) {
+        tick.record(nanos);
+    }
+
+    void recordBroadcast(long nanos) {
+        broadcast.record(nanos);
+    }
+
+    void messageParsed(boolean ok) {
+        if (ok) messagesParsed.increment();
+        else parseFailures.increment();
+    }
+}
@@ -0,0 +1,202 @@
+package ru.kpfu.itis.net;
+
+import ru.kpfu.itis.model.Bomb;
+import ru.kpfu.itis.model.Explosion;
+import ru.kpfu.itis.model.Player;
+import ru.kpfu.itis.net.message.DeltaStateMessage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class Snapshot {
+    private long tick;
+    private final int width;
+    private final Map<Integer, Player> players;
+    private final Map<Integer, Bomb> bombs = new HashMap<>();
+    private final Map<Integer, Explosion> explosions = new HashMap<>();
+    private int clearedCount;
+    private int left;
+    private int top;
+    private int right = Integer.MAX_VALUE;
+    private int bottom = Integer.MAX_VALUE;
+
+    Snapshot(int width) {
+        this.width = width;
+        this.players = new HashMap<>();
+    }
+
+    Snapshot(long tick, int width, Map<Integer, Player> players, Collection<Bomb> bombs,
+             Collection<Explosion> explosions, int clearedCount) {
+        this.tick = tick;
+        this.width = width;
+        this.players = players;
+        for (Bomb b : bombs) {
+            add(b);
+        }
+        for (Explosion e : explosions) {
+            add(e);
+        }
+        this.clearedCount = clearedCount;
+    }
+
+    Snapshot reset(long tick, int clearedCount, int left, int top, int right, int bottom) {
+        players.clear();
+        bombs.clear();
+        explosions.clear();
+        this.tick = tick;
+        this.clearedCount = clearedCount;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        return this;
+    }
+
+    void add(Player p) {
+        players.put(p.id(), p);
+    }
+
+    void add(Bomb b) {
+        bombs.put(b.y() * width + b.x(), b);
+    }
+
+    void add(Explosion e) {
+        explosions.merge(e.y() * width + e.x(), e, (a, b) -> a.ttl() >= b.ttl() ? a : b);
+    }
+
+    long tick() {
+        return tick;
+    }
+
+    int top() {
+        return top;
+    }
+
+    int bottom() {
+        return bottom;
+    }
+
+    Map<Integer, Player> players() {
+        return players;
+    }
+
+    Collection<Bomb> bombs() {
+        return bombs.values();
+    }
+
+    Collection<Explosion> explosions() {
+        return explosions.values();
+    }
+
+    boolean contains(int x, int y) {
+        return x >= left && y >= top && x <= right && y <= bottom;
+    }
+
+    DeltaStateMessage deltaFrom(Snapshot base, int[] clearedLog) {
+        return deltaFrom(base, clearedLog, null);
+    }
+
+    DeltaStateMessage deltaFrom(Snapshot base, int[] clearedLog, long[] clearedMask) {
+        long elapsed = tick - base.tick;
+        List<Player> changedPlayers = new ArrayList<>();
+        List<Integer> removedPlayers = new ArrayList<>();
+        for (Player p : players.values()) {
+            Player old = base.players.get(p.id());
+            if (old == null) {
+                changedPlayers.add(p);
+            } else if (!p.equals(old)) {
+                String name = p.name().equals(old.name()) ? null : p.name();
+                changedPlayers.add(new Player(p.id(), name, p.x(), p.y(), p.alive(), p.bombsAvailable(), p.inputTick()));
+            }
+        }
+        for (Integer id : base.players.keySet()) {
+            if (!players.containsKey(id)) removedPlayers.add(id);
+        }
+
+        List<Bomb> changedBombs = new ArrayList<>();
+        List<Integer> removedBombs = new ArrayList<>();
+        for (Map.Entry<Integer, Bomb> entry : bombs.entrySet()) {
+            Bomb b = entry.getValue();
+            Bomb old = base.bombs.get(entry.getKey());
+            if (old == null || old.ownerId() != b.ownerId() || old.timer() - elapsed != b.timer()) changedBombs.add(b);
+        }
+        for (Integer cell : base.bombs.keySet()) {
+            if (!bombs.containsKey(cell)) removedBombs.add(cell);
+        }
+
+        List<Explosion> changedExplosions = new ArrayList<>();
+        List<Integer> removedExplosions = new ArrayList<>();
+        for (Map.Entry<Integer, Explosion> entry : explosions.entrySet()) {
+            Explosion e = entry.getValue();
+            Explosion old = base.explosions.get(entry.getKey());
+            if (old == null || old.ttl() - elapsed != e.ttl()) changedExplosions.add(e);
+        }
+        for (Integer cell : base.explosions.keySet()) {
+            if (!explosions.containsKey(cell)) removedExplosions.add(cell);
+        }
+
+        List<Integer> clearedCells = new ArrayList<>(clearedCount - base.clearedCount);
+        for (int i = base.clearedCount; i < clearedCount; i++) {
+            int cell = clearedLog[i];
+            int x = cell % width;
+            int y = cell / width;
+            if (contains(x, y) && base.contains(x, y)) clearedCells.add(cell);
+        }
+        if (clearedMask != null) {
+            for (int y = top; y <= bottom; y++) {
+                for (int x = left; x <= right; x++) {
+                    int cell = y * width + x;
+                    if (!base.contains(x, y) && (clearedMask[cell >>> 6] & (1L << cell)) != 0) clearedCells.add(cell);
+                }
+            }
+        }
+
+        return new DeltaStateMessage(tick, base.tick, changedPlayers, removedPlayers, changedBombs, removedBombs,
+                changedExplosions, removedExplosions, clearedCells);
+    }
+
+    Snapshot apply(DeltaStateMessage delta) {
+        long elapsed = delta.tick() - tick;
+        Map<Integer, Player> nextPlayers = new HashMap<>(players);
+        for (Integer id : delta.removedPlayers()) {
+            nextPlayers.remove(id);
+        }
+        for (Player p : delta.players()) {
+            if (p.name() == null) {
+                Player old = players.get(p.id());
+                String name = old != null ? old.name() : "?";
+                p = new Player(p.id(), name, p.x(), p.y(), p.alive(), p.bombsAvailable(), p.inputTick());
+            }
+            nextPlayers.put(p.id(), p);
+        }
+
+        Map<Integer, Bomb> nextBombs = new HashMap<>();
+        for (Map.Entry<Integer, Bomb> entry : bombs.entrySet()) {
+            Bomb b = entry.getValue();
+            if (b.timer() - elapsed > 0) nextBombs.put(entry.getKey(), new Bomb(b.ownerId(), b.x(), b.y(), (int) (b.timer() - elapsed)));
+        }
+        for (Integer cell : delta.removedBombs()) {
+            nextBombs.remove(cell);
+        }
+        for (Bomb b : delta.bombs()) {
+            nextBombs.put(b.y() * width + b.x(), b);
+        }
+
+        Map<Integer, Explosion> nextExplosions = new HashMap<>();
+        for (Map.Entry<Integer, Explosion> entry : explosions.entrySet()) {
+            Explosion e = entry.getValue();
+            if (e.ttl() - elapsed > 0) nextExplosions.put(entry.getKey(), new Explosion(e.x(), e.y(), (int) (e.ttl() - elapsed)));
+        }
+        for (Integer cell : delta.removedExplosions()) {
+            nextExplosions.remove(cell);
+        }
+        for (Explosion e : delta.explosions()) {
+            nextExplosions.put(e.y() * width + e.x(), e);
+        }
+
+        return new Snapshot(delta.tick(), width, nextPlayers, nextBombs.values(), nextExplosions.values(), 0);
+    }
+}
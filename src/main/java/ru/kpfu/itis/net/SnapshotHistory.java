@@ -0,0 +1,23 @@
+package ru.kpfu.itis.net;
+
+class SnapshotHistory {
+    private final Snapshot[] ring;
+
+    SnapshotHistory(int capacity) {
+        this.ring = new Snapshot[capacity];
+    }
+
+    void put(Snapshot snapshot) {
+        ring[(int) Math.floorMod(snapshot.tick(), (long) ring.length)] = snapshot;
+    }
+
+    Snapshot evicted(long tick) {
+        return ring[(int) Math.floorMod(tick, (long) ring.length)];
+    }
+
+    Snapshot get(long tick) {
+        if (tick <= 0) return null;
+        Snapshot snapshot = ring[(int) Math.floorMod(tick, (long) ring.length)];
+        return snapshot != null && snapshot.tick() == tick ? snapshot : null;
+    }
+}
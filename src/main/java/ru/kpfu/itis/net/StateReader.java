@@ -0,0 +1,724 @@
+package ru.kpfu.itis.net;
+
+import ru.kpfu.itis.model.Bomb;
+import ru.kpfu.itis.model.Explosion;
+import ru.kpfu.itis.model.Player;
+import ru.kpfu.itis.net.message.MessageType;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class StateReader {
+    private static final int HISTORY = 64;
+    private static final byte[] TEXT_STATE = (MessageType.STATE.name() + Protocol.getDelimiter()).getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TEXT_DELTA = (MessageType.DELTA.name() + Protocol.getDelimiter()).getBytes(StandardCharsets.US_ASCII);
+    private static final byte DELIMITER = (byte) Protocol.getDelimiter().charAt(0);
+    private static final byte TOKEN_DELIMITER = (byte) Protocol.getTokenDelimiter().charAt(0);
+    private static final byte GRID_ROW_DELIMITER = (byte) Protocol.getGridRowDelimiter().charAt(0);
+
+    private static final class Frame {
+        long tick;
+        int playerCount;
+        int[] playerIds = new int[8];
+        int[] playerXs = new int[8];
+        int[] playerYs = new int[8];
+        int[] playerBombs = new int[8];
+        int[] playerInputTicks = new int[8];
+        boolean[] playerAlive = new boolean[8];
+        String[] playerNames = new String[8];
+        int bombCount;
+        int[] bombOwners = new int[8];
+        int[] bombXs = new int[8];
+        int[] bombYs = new int[8];
+        int[] bombTimers = new int[8];
+        int fireCount;
+        int[] fireXs = new int[16];
+        int[] fireYs = new int[16];
+        int[] fireTtls = new int[16];
+
+        void copyFrom(Frame other) {
+            tick = other.tick;
+            ensurePlayers(other.playerCount);
+            playerCount = other.playerCount;
+            System.arraycopy(other.playerIds, 0, playerIds, 0, playerCount);
+            System.arraycopy(other.playerXs, 0, playerXs, 0, playerCount);
+            System.arraycopy(other.playerYs, 0, playerYs, 0, playerCount);
+            System.arraycopy(other.playerBombs, 0, playerBombs, 0, playerCount);
+            System.arraycopy(other.playerInputTicks, 0, playerInputTicks, 0, playerCount);
+            System.arraycopy(other.playerAlive, 0, playerAlive, 0, playerCount);
+            System.arraycopy(other.playerNames, 0, playerNames, 0, playerCount);
+            ensureBombs(other.bombCount);
+            bombCount = other.bombCount;
+            System.arraycopy(other.bombOwners, 0, bombOwners, 0, bombCount);
+            System.arraycopy(other.bombXs, 0, bombXs, 0, bombCount);
+            System.arraycopy(other.bombYs, 0, bombYs, 0, bombCount);
+            System.arraycopy(other.bombTimers, 0, bombTimers, 0, bombCount);
+            ensureFire(other.fireCount);
+            fireCount = other.fireCount;
+            System.arraycopy(other.fireXs, 0, fireXs, 0, fireCount);
+            System.arraycopy(other.fireYs, 0, fireYs, 0, fireCount);
+            System.arraycopy(other.fireTtls, 0, fireTtls, 0, fireCount);
+        }
+
+        void clear(long tick) {
+            this.tick = tick;
+            playerCount = 0;
+            bombCount = 0;
+            fireCount = 0;
+        }
+
+        void age(long elapsed) {
+            int kept = 0;
+            for (int i = 0; i < bombCount; i++) {
+                if (bombTimers[i] - elapsed <= 0) continue;
+                bombOwners[kept] = bombOwners[i];
+                bombXs[kept] = bombXs[i];
+                bombYs[kept] = bombYs[i];
+                bombTimers[kept++] = (int) (bombTimers[i] - elapsed);
+            }
+            bombCount = kept;
+            kept = 0;
+            for (int i = 0; i < fireCount; i++) {
+                if (fireTtls[i] - elapsed <= 0) continue;
+                fireXs[kept] = fireXs[i];
+                fireYs[kept] = fireYs[i];
+                fireTtls[kept++] = (int) (fireTtls[i] - elapsed);
+            }
+            fireCount = kept;
+        }
+
+        int player(int id) {
+            for (int i = 0; i < playerCount; i++) {
+                if (playerIds[i] == id) return i;
+            }
+            return -1;
+        }
+
+        int putPlayer(int id) {
+            int i = player(id);
+            if (i >= 0) return i;
+            ensurePlayers(playerCount + 1);
+            playerIds[playerCount] = id;
+            playerNames[playerCount] = null;
+            return playerCount++;
+        }
+
+        void removePlayer(int id) {
+            int i = player(id);
+            if (i < 0) return;
+            int tail = --playerCount - i;
+            System.arraycopy(playerIds, i + 1, playerIds, i, tail);
+            System.arraycopy(playerXs, i + 1, playerXs, i, tail);
+            System.arraycopy(playerYs, i + 1, playerYs, i, tail);
+            System.arraycopy(playerBombs, i + 1, playerBombs, i, tail);
+            System.arraycopy(playerInputTicks, i + 1, playerInputTicks, i, tail);
+            System.arraycopy(playerAlive, i + 1, playerAlive, i, tail);
+            System.arraycopy(playerNames, i + 1, playerNames, i, tail);
+            playerNames[playerCount] = null;
+        }
+
+        void putBomb(int owner, int x, int y, int timer) {
+            int i = bomb(x, y);
+            if (i < 0) {
+                ensureBombs(bombCount + 1);
+                i = bombCount++;
+            }
+            bombOwners[i] = owner;
+            bombXs[i] = x;
+            bombYs[i] = y;
+            bombTimers[i] = timer;
+        }
+
+        int bomb(int x, int y) {
+            for (int i = 0; i < bombCount; i++) {
+                if (bombXs[i] == x && bombYs[i] == y) return i;
+            }
+            return -1;
+        }
+
+        void removeBomb(int x, int y) {
+            int i = bomb(x, y);
+            if (i < 0) return;
+            int tail = --bombCount - i;
+            System.arraycopy(bombOwners, i + 1, bombOwners, i, tail);
+            System.arraycopy(bombXs, i + 1, bombXs, i, tail);
+            System.arraycopy(bombYs, i + 1, bombYs, i, tail);
+            System.arraycopy(bombTimers, i + 1, bombTimers, i, tail);
+        }
+
+        void putFire(int x, int y, int ttl) {
+            int i = fire(x, y);
+            if (i < 0) {
+                ensureFire(fireCount + 1);
+                i = fireCount++;
+            }
+            fireXs[i] = x;
+            fireYs[i] = y;
+            fireTtls[i] = ttl;
+        }
+
+        int fire(int x, int y) {
+            for (int i = 0; i < fireCount; i++) {
+                if (fireXs[i] == x && fireYs[i] == y) return i;
+            }
+            return -1;
+        }
+
+        void removeFire(int x, int y) {
+            int i = fire(x, y);
+            if (i < 0) return;
+            int tail = --fireCount - i;
+            System.arraycopy(fireXs, i + 1, fireXs, i, tail);
+            System.arraycopy(fireYs, i + 1, fireYs, i, tail);
+            System.arraycopy(fireTtls, i + 1, fireTtls, i, tail);
+        }
+
+        private void ensurePlayers(int count) {
+            if (count <= playerIds.length) return;
+            int size = Math.max(count, playerIds.length * 2);
+            playerIds = Arrays.copyOf(playerIds, size);
+            playerXs = Arrays.copyOf(playerXs, size);
+            playerYs = Arrays.copyOf(playerYs, size);
+            playerBombs = Arrays.copyOf(playerBombs, size);
+            playerInputTicks = Arrays.copyOf(playerInputTicks, size);
+            playerAlive = Arrays.copyOf(playerAlive, size);
+            playerNames = Arrays.copyOf(playerNames, size);
+        }
+
+        private void ensureBombs(int count) {
+            if (count <= bombOwners.length) return;
+            int size = Math.max(count, bombOwners.length * 2);
+            bombOwners = Arrays.copyOf(bombOwners, size);
+            bombXs = Arrays.copyOf(bombXs, size);
+            bombYs = Arrays.copyOf(bombYs, size);
+            bombTimers = Arrays.copyOf(bombTimers, size);
+        }
+
+        private void ensureFire(int count) {
+            if (count <= fireXs.length) return;
+            int size = Math.max(count, fireXs.length * 2);
+            fireXs = Arrays.copyOf(fireXs, size);
+            fireYs = Arrays.copyOf(fireYs, size);
+            fireTtls = Arrays.copyOf(fireTtls, size);
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final Frame[] history = new Frame[HISTORY];
+    private Frame spare = new Frame();
+    private Frame latest;
+
+    private byte[] data;
+    private int pos;
+    private int limit;
+
+    private boolean delta;
+    private boolean missingBase;
+    private long serverTime;
+    private int gridStart;
+    private int gridTop;
+    private int gridRows;
+    private boolean gridPacked;
+    private int clearedCount;
+    private int[] cleared = new int[16];
+
+    private boolean gridChanged;
+    private boolean entitiesChanged;
+    private byte[] cells;
+    private Map<Integer, Player> players = Map.of();
+    private List<Bomb> bombs = List.of();
+    private List<Explosion> explosions = List.of();
+
+    StateReader(int width, int height, byte[] cells) {
+        this.width = width;
+        this.height = height;
+        this.cells = cells;
+    }
+
+    boolean read(ByteBuffer frame, WireFormat format) {
+        if (!frame.hasArray()) return false;
+        data = frame.array();
+        pos = frame.arrayOffset() + frame.position();
+        limit = frame.arrayOffset() + frame.limit();
+        Frame next = spare;
+        missingBase = false;
+        serverTime = 0;
+        gridStart = -1;
+        clearedCount = 0;
+        try {
+            if (!(format == WireFormat.BINARY ? readBinary(next) : readText(next))) return false;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return false;
+        }
+        if (missingBase) return true;
+        gridChanged = delta ? clearCells() : buildCells();
+        entitiesChanged = buildPlayers(next) | buildBombs(next) | buildExplosions(next);
+        int slot = (int) Math.floorMod(next.tick, (long) HISTORY);
+        Frame evicted = history[slot];
+        history[slot] = next;
+        latest = next;
+        spare = evicted != null ? evicted : new Frame();
+        return true;
+    }
+
+    long tick() {
+        return latest.tick;
+    }
+
+    boolean delta() {
+        return delta;
+    }
+
+    boolean missingBase() {
+        return missingBase;
+    }
+
+    long serverTime() {
+        return serverTime;
+    }
+
+    boolean gridChanged() {
+        return gridChanged;
+    }
+
+    boolean entitiesChanged() {
+        return entitiesChanged;
+    }
+
+    byte[] cells() {
+        return cells;
+    }
+
+    Map<Integer, Player> players() {
+        return players;
+    }
+
+    List<Bomb> bombs() {
+        return bombs;
+    }
+
+    List<Explosion> explosions() {
+        return explosions;
+    }
+
+    private Frame base(long tick) {
+        if (tick <= 0) return null;
+        Frame frame = history[(int) Math.floorMod(tick, (long) HISTORY)];
+        return frame != null && frame.tick == tick ? frame : null;
+    }
+
+    private boolean readBinary(Frame next) {
+        byte type = next();
+        if (type == MessageType.STATE.ordinal()) {
+            delta = false;
+            readBinaryState(next);
+            return true;
+        }
+        if (type == MessageType.DELTA.ordinal()) {
+            delta = true;
+            readBinaryDelta(next);
+            return true;
+        }
+        return false;
+    }
+
+    private void readBinaryState(Frame next) {
+        next.clear(varLong());
+        int count = count();
+        for (int i = 0; i < count; i++) {
+            int p = next.putPlayer(varInt());
+            next.playerXs[p] = varInt();
+            next.playerYs[p] = varInt();
+            next.playerBombs[p] = varInt();
+            next.playerInputTicks[p] = varInt();
+            next.playerAlive[p] = (next() & BinaryProtocol.FLAG_ALIVE) != 0;
+            int length = count();
+            next.playerNames[p] = name(next.playerIds[p], skip(length), length);
+        }
+        count = count();
+        for (int i = 0; i < count; i++) {
+            next.putBomb(varInt(), varInt(), varInt(), varInt());
+        }
+        readBinaryFire(next);
+        gridPacked = true;
+        int gridWidth = varInt();
+        if (gridWidth != 0) {
+            gridRows = varInt();
+            if (gridWidth != width || gridRows < 1 || gridRows > height) throw new IllegalArgumentException("Неверный размер карты");
+            gridStart = skip((width * gridRows + 3) / 4);
+        }
+        gridTop = pos < limit ? varInt() : 0;
+        if (gridTop < 0 || gridStart >= 0 && gridTop > height - gridRows) throw new IllegalArgumentException("Неверный размер карты");
+        serverTime = pos < limit ? varLong() : 0;
+    }
+
+    private void readBinaryDelta(Frame next) {
+        long tick = varLong();
+        Frame base = base(tick - varLong());
+        if (base == null) {
+            missingBase = true;
+            return;
+        }
+        next.copyFrom(base);
+        next.tick = tick;
+        next.age(tick - base.tick);
+        int count = count();
+        for (int i = 0; i < count; i++) {
+            int p = next.putPlayer(varInt());
+            next.playerXs[p] = varInt();
+            next.playerYs[p] = varInt();
+            next.playerBombs[p] = varInt();
+            next.playerInputTicks[p] = varInt();
+            int flags = next();
+            next.playerAlive[p] = (flags & BinaryProtocol.FLAG_ALIVE) != 0;
+            if ((flags & BinaryProtocol.FLAG_NAMED) != 0) {
+                int length = count();
+                next.playerNames[p] = name(next.playerIds[p], skip(length), length);
+            } else if (next.playerNames[p] == null) {
+                next.playerNames[p] = "?";
+            }
+        }
+        count = count();
+        for (int i = 0; i < count; i++) {
+            next.removePlayer(varInt());
+        }
+        count = count();
+        for (int i = 0; i < count; i++) {
+            next.putBomb(varInt(), varInt(), varInt(), varInt());
+        }
+        count = count();
+        for (int i = 0; i < count; i++) {
+            int cell = varInt();
+            next.removeBomb(cell % width, cell / width);
+        }
+        readBinaryFire(next);
+        count = count();
+        for (int i = 0; i < count; i++) {
+            int cell = varInt();
+            next.removeFire(cell % width, cell / width);
+        }
+        count = count();
+        for (int i = 0; i < count; i++) {
+            clear(varInt());
+        }
+        serverTime = pos < limit ? varLong() : 0;
+    }
+
+    private void readBinaryFire(Frame next) {
+        int count = count();
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < count; i++) {
+            int dy = varInt();
+            y += dy;
+            x = dy == 0 ? x + varInt() : varInt();
+            next.putFire(x, y, next() & 0xFF);
+        }
+    }
+
+    private boolean readText(Frame next) {
+        if (prefixed(TEXT_STATE)) {
+            delta = false;
+            next.clear(number());
+            gridPacked = false;
+        } else if (prefixed(TEXT_DELTA)) {
+            delta = true;
+            long tick = number();
+            expect(DELIMITER);
+            Frame base = base(number());
+            if (base == null) {
+                missingBase = true;
+                return true;
+            }
+            next.copyFrom(base);
+            next.tick = tick;
+            next.age(tick - base.tick);
+        } else {
+            return false;
+        }
+        while (pos < limit) {
+            expect(DELIMITER);
+            if (pos == limit || data[pos] == DELIMITER) continue;
+            int start = pos;
+            int length = fieldEnd(TOKEN_DELIMITER) - start;
+            if (pos == limit || data[pos] != TOKEN_DELIMITER || length == 0 || length > 2) {
+                fieldEnd(DELIMITER);
+                continue;
+            }
+            pos++;
+            int token = length == 1 ? data[start] : data[start] << 8 | data[start + 1];
+            switch (token) {
+                case 'P' -> readTextPlayer(next);
+                case 'B' -> next.putBomb(textInt(), textInt(), textInt(), (int) number());
+                case 'F' -> next.putFire(textInt(), textInt(), (int) number());
+                case 'M' -> readTextGrid();
+                case 'R' << 8 | 'P' -> next.removePlayer((int) number());
+                case 'R' << 8 | 'B' -> {
+                    int cell = (int) number();
+                    next.removeBomb(cell % width, cell / width);
+                }
+                case 'R' << 8 | 'F' -> {
+                    int cell = (int) number();
+                    next.removeFire(cell % width, cell / width);
+                }
+                case 'C' -> clear((int) number());
+                case 'T' -> serverTime = number();
+                default -> fieldEnd(DELIMITER);
+            }
+        }
+        return true;
+    }
+
+    private boolean prefixed(byte[] prefix) {
+        if (limit - pos < prefix.length || !Arrays.equals(data, pos, pos + prefix.length, prefix, 0, prefix.length)) {
+            return false;
+        }
+        pos += prefix.length;
+        return true;
+    }
+
+    private void readTextPlayer(Frame next) {
+        int p = next.putPlayer(textInt());
+        next.playerXs[p] = textInt();
+        next.playerYs[p] = textInt();
+        int start = pos;
+        int end = fieldEnd(TOKEN_DELIMITER);
+        next.playerAlive[p] = end - start == 4 && (data[start] | 0x20) == 't' && (data[start + 1] | 0x20) == 'r'
+                && (data[start + 2] | 0x20) == 'u' && (data[start + 3] | 0x20) == 'e';
+        expect(TOKEN_DELIMITER);
+        next.playerBombs[p] = textInt();
+        start = pos;
+        int length = fieldEnd(TOKEN_DELIMITER) - start;
+        if (length > 0 || !delta) next.playerNames[p] = name(next.playerIds[p], start, length);
+        else if (next.playerNames[p] == null) next.playerNames[p] = "?";
+        if (pos < limit && data[pos] == TOKEN_DELIMITER) {
+            pos++;
+            next.playerInputTicks[p] = (int) number();
+        } else {
+            next.playerInputTicks[p] = 0;
+        }
+    }
+
+    private void readTextGrid() {
+        int start = pos;
+        int filled = 0;
+        while (pos < limit && data[pos] != DELIMITER && data[pos] != TOKEN_DELIMITER) {
+            if (data[pos++] != GRID_ROW_DELIMITER) filled++;
+        }
+        int top = 0;
+        if (pos < limit && data[pos] == TOKEN_DELIMITER) {
+            pos++;
+            top = (int) number();
+        }
+        if (filled == 0) return;
+        int rows = filled / width;
+        if (filled % width != 0 || rows > height || top < 0 || top > height - rows) {
+            throw new IllegalArgumentException("Неверный размер карты");
+        }
+        gridStart = start;
+        gridRows = rows;
+        gridTop = top;
+    }
+
+    private void clear(int cell) {
+        if (clearedCount == cleared.length) cleared = Arrays.copyOf(cleared, cleared.length * 2);
+        cleared[clearedCount++] = cell;
+    }
+
+    private boolean clearCells() {
+        byte[] next = null;
+        for (int i = 0; i < clearedCount; i++) {
+            int cell = cleared[i];
+            if (cell < 0 || cell >= cells.length || (next != null ? next : cells)[cell] == '.') continue;
+            if (next == null) next = cells.clone();
+            next[cell] = '.';
+        }
+        if (next == null) return false;
+        cells = next;
+        return true;
+    }
+
+    private boolean buildCells() {
+        if (gridStart < 0) return false;
+        byte[] next = null;
+        int offset = gridTop * width;
+        int p = gridStart;
+        for (int i = 0; i < gridRows * width; i++) {
+            byte cell;
+            if (gridPacked) {
+                cell = (byte) BinaryProtocol.CELLS[(data[gridStart + (i >> 2)] >> ((i & 3) << 1)) & 3];
+            } else {
+                while (data[p] == GRID_ROW_DELIMITER) {
+                    p++;
+                }
+                cell = data[p++];
+            }
+            if ((next != null ? next : cells)[offset + i] == cell) continue;
+            if (next == null) next = cells.clone();
+            next[offset + i] = cell;
+        }
+        if (next == null) return false;
+        cells = next;
+        return true;
+    }
+
+    private String name(int id, int start, int length) {
+        if (latest != null) {
+            int i = latest.player(id);
+            if (i >= 0 && sameName(latest.playerNames[i], start, length)) return latest.playerNames[i];
+        }
+        return new String(data, start, length, StandardCharsets.UTF_8);
+    }
+
+    private boolean sameName(String name, int start, int length) {
+        int p = start;
+        int end = start + length;
+        for (int k = 0; k < name.length(); k++) {
+            char c = name.charAt(k);
+            if (Character.isSurrogate(c)) {
+                return name.equals(new String(data, start, length, StandardCharsets.UTF_8));
+            }
+            if (c < 0x80) {
+                if (p == end || data[p++] != c) return false;
+            } else if (c < 0x800) {
+                if (end - p < 2 || data[p++] != (byte) (0xC0 | c >> 6) || data[p++] != (byte) (0x80 | c & 0x3F)) return false;
+            } else {
+                if (end - p < 3 || data[p++] != (byte) (0xE0 | c >> 12) || data[p++] != (byte) (0x80 | c >> 6 & 0x3F)
+                        || data[p++] != (byte) (0x80 | c & 0x3F)) return false;
+            }
+        }
+        return p == end;
+    }
+
+    private boolean buildPlayers(Frame frame) {
+        Map<Integer, Player> previous = players;
+        boolean same = previous.size() == frame.playerCount;
+        for (int i = 0; i < frame.playerCount && same; i++) {
+            Player old = previous.get(frame.playerIds[i]);
+            same = old != null && matches(old, frame, i);
+        }
+        if (same) return false;
+        Map<Integer, Player> next = new HashMap<>();
+        for (int i = 0; i < frame.playerCount; i++) {
+            Player old = previous.get(frame.playerIds[i]);
+            next.put(frame.playerIds[i], old != null && matches(old, frame, i) ? old
+                    : new Player(frame.playerIds[i], frame.playerNames[i], frame.playerXs[i], frame.playerYs[i],
+                    frame.playerAlive[i], frame.playerBombs[i], frame.playerInputTicks[i]));
+        }
+        players = Collections.unmodifiableMap(next);
+        return true;
+    }
+
+    private static boolean matches(Player p, Frame frame, int i) {
+        return p.x() == frame.playerXs[i] && p.y() == frame.playerYs[i] && p.alive() == frame.playerAlive[i]
+                && p.bombsAvailable() == frame.playerBombs[i] && p.inputTick() == frame.playerInputTicks[i]
+                && p.name().equals(frame.playerNames[i]);
+    }
+
+    private boolean buildBombs(Frame frame) {
+        boolean same = bombs.size() == frame.bombCount;
+        for (int i = 0; i < frame.bombCount && same; i++) {
+            Bomb b = bombs.get(i);
+            same = b.ownerId() == frame.bombOwners[i] && b.x() == frame.bombXs[i] && b.y() == frame.bombYs[i]
+                    && b.timer() == frame.bombTimers[i];
+        }
+        if (same) return false;
+        List<Bomb> next = new ArrayList<>(frame.bombCount);
+        for (int i = 0; i < frame.bombCount; i++) {
+            next.add(new Bomb(frame.bombOwners[i], frame.bombXs[i], frame.bombYs[i], frame.bombTimers[i]));
+        }
+        bombs = Collections.unmodifiableList(next);
+        return true;
+    }
+
+    private boolean buildExplosions(Frame frame) {
+        boolean same = explosions.size() == frame.fireCount;
+        for (int i = 0; i < frame.fireCount && same; i++) {
+            Explosion e = explosions.get(i);
+            same = e.x() == frame.fireXs[i] && e.y() == frame.fireYs[i] && e.ttl() == frame.fireTtls[i];
+        }
+        if (same) return false;
+        List<Explosion> next = new ArrayList<>(frame.fireCount);
+        for (int i = 0; i < frame.fireCount; i++) {
+            next.add(new Explosion(frame.fireXs[i], frame.fireYs[i], frame.fireTtls[i]));
+        }
+        explosions = Collections.unmodifiableList(next);
+        return true;
+    }
+
+    private byte next() {
+        if (pos == limit) throw new BufferUnderflowException();
+        return data[pos++];
+    }
+
+    private int skip(int length) {
+        if (length > limit - pos) throw new BufferUnderflowException();
+        int start = pos;
+        pos += length;
+        return start;
+    }
+
+    private int count() {
+        int count = varInt();
+        if (count < 0 || count > limit - pos) throw new BufferUnderflowException();
+        return count;
+    }
+
+    private int varInt() {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = next();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Слишком длинный varint");
+    }
+
+    private long varLong() {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = next();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Слишком длинный varint");
+    }
+
+    private void expect(byte delimiter) {
+        if (next() != delimiter) throw new IllegalArgumentException("Неверный формат STATE");
+    }
+
+    private int fieldEnd(byte delimiter) {
+        while (pos < limit && data[pos] != delimiter && data[pos] != DELIMITER) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private int textInt() {
+        int value = (int) number();
+        expect(TOKEN_DELIMITER);
+        return value;
+    }
+
+    private long number() {
+        boolean negative = pos < limit && data[pos] == '-';
+        if (negative) pos++;
+        int start = pos;
+        long value = 0;
+        while (pos < limit && data[pos] >= '0' && data[pos] <= '9') {
+            if (pos - start == 18) throw new IllegalArgumentException("Слишком длинное число");
+            value = value * 10 + (data[pos++] - '0');
+        }
+        if (pos == start) throw new IllegalArgumentException("Неверный формат STATE");
+        return negative ? -value : value;
+    }
+}
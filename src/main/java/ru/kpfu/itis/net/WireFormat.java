@@ -0,0 +1,72 @@
+package ru.kpfu.itis.net;
+
+import ru.kpfu.itis.metrics.CodecEvent;
+import ru.kpfu.itis.net.message.Message;
+
+import jdk.jfr.EventType;
+
+import java.nio.ByteBuffer;
+
+public enum WireFormat {
+    TEXT {
+        @Override
+        ByteBuffer write(Message message) {
+            return Protocol.frame(message.serialize());
+        }
+
+        @Override
+        Message read(ByteBuffer frame) {
+            return Protocol.parse(frame);
+        }
+    },
+    BINARY {
+        @Override
+        ByteBuffer write(Message message) {
+            return BinaryProtocol.encode(message);
+        }
+
+        @Override
+        Message read(ByteBuffer frame) {
+            return BinaryProtocol.decode(frame);
+        }
+    };
+
+    private static final EventType CODEC_EVENTS = EventType.getEventType(CodecEvent.class);
+
+    abstract ByteBuffer write(Message message);
+
+    abstract Message read(ByteBuffer frame);
+
+    public ByteBuffer encode(Message message) {
+        if (!CODEC_EVENTS.isEnabled()) return write(message);
+        CodecEvent event = new CodecEvent();
+        event.begin();
+        ByteBuffer packet = write(message);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "encode";
+            event.format = name();
+            event.messageType = message.getType().name();
+            event.bytes = packet.remaining();
+            event.commit();
+        }
+        return packet;
+    }
+
+    public Message decode(ByteBuffer frame) {
+        if (!CODEC_EVENTS.isEnabled()) return read(frame);
+        CodecEvent event = new CodecEvent();
+        event.begin();
+        int bytes = frame.remaining();
+        Message message = read(frame);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "decode";
+            event.format = name();
+            event.messageType = message != null ? message.getType().name() : "INVALID";
+            event.bytes = bytes;
+            event.commit();
+        }
+        return message;
+    }
+}
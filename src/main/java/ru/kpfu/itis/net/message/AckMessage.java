@@ -0,0 +1,25 @@
+package ru.kpfu.itis.net.message;
+
+import ru.kpfu.itis.net.Protocol;
+
+public class AckMessage extends Message {
+    private final long tick;
+
+    public AckMessage(long tick) {
+        this.tick = tick;
+    }
+
+    public long tick() {
+        return tick;
+    }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.ACK;
+    }
+
+    @Override
+    public String serialize() {
+        return MessageType.ACK.name() + Protocol.getDelimiter() + tick;
+    }
+}
@@ -0,0 +1,147 @@
+package ru.kpfu.itis.net.message;
+
+import ru.kpfu.itis.model.Bomb;
+import ru.kpfu.itis.model.Explosion;
+import ru.kpfu.itis.model.Player;
+import ru.kpfu.itis.net.Protocol;
+
+import java.util.List;
+
+public class DeltaStateMessage extends Message {
+    private final long tick;
+    private final long baseTick;
+    private final List<Player> players;
+    private final List<Integer> removedPlayers;
+    private final List<Bomb> bombs;
+    private final List<Integer> removedBombs;
+    private final List<Explosion> explosions;
+    private final List<Integer> removedExplosions;
+    private final List<Integer> clearedCells;
+    private final long serverTime;
+
+    public DeltaStateMessage(long tick, long baseTick,
+                             List<Player> players, List<Integer> removedPlayers,
+                             List<Bomb> bombs, List<Integer> removedBombs,
+                             List<Explosion> explosions, List<Integer> removedExplosions,
+                             List<Integer> clearedCells) {
+        this(tick, baseTick, players, removedPlayers, bombs, removedBombs, explosions, removedExplosions,
+                clearedCells, 0);
+    }
+
+    public DeltaStateMessage(long tick, long baseTick,
+                             List<Player> players, List<Integer> removedPlayers,
+                             List<Bomb> bombs, List<Integer> removedBombs,
+                             List<Explosion> explosions, List<Integer> removedExplosions,
+                             List<Integer> clearedCells, long serverTime) {
+        this.tick = tick;
+        this.baseTick = baseTick;
+        this.players = List.copyOf(players);
+        this.removedPlayers = List.copyOf(removedPlayers);
+        this.bombs = List.copyOf(bombs);
+        this.removedBombs = List.copyOf(removedBombs);
+        this.explosions = List.copyOf(explosions);
+        this.removedExplosions = List.copyOf(removedExplosions);
+        this.clearedCells = List.copyOf(clearedCells);
+        this.serverTime = serverTime;
+    }
+
+    public long tick() {
+        return tick;
+    }
+
+    public long baseTick() {
+        return baseTick;
+    }
+
+    public List<Player> players() {
+        return players;
+    }
+
+    public List<Integer> removedPlayers() {
+        return removedPlayers;
+    }
+
+    public List<Bomb> bombs() {
+        return bombs;
+    }
+
+    public List<Integer> removedBombs() {
+        return removedBombs;
+    }
+
+    public List<Explosion> explosions() {
+        return explosions;
+    }
+
+    public List<Integer> removedExplosions() {
+        return removedExplosions;
+    }
+
+    public List<Integer> clearedCells() {
+        return clearedCells;
+    }
+
+    public long serverTime() {
+        return serverTime;
+    }
+
+    public DeltaStateMessage stamped(long serverTime) {
+        return new DeltaStateMessage(tick, baseTick, players, removedPlayers, bombs, removedBombs,
+                explosions, removedExplosions, clearedCells, serverTime);
+    }
+
+    public boolean isEmpty() {
+        return players.isEmpty() && removedPlayers.isEmpty() && bombs.isEmpty() && removedBombs.isEmpty()
+                && explosions.isEmpty() && removedExplosions.isEmpty() && clearedCells.isEmpty();
+    }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.DELTA;
+    }
+
+    @Override
+    public String serialize() {
+        String d = Protocol.getDelimiter();
+        String t = Protocol.getTokenDelimiter();
+        StringBuilder sb = new StringBuilder();
+        sb.append(MessageType.DELTA.name()).append(d).append(tick).append(d).append(baseTick);
+        for (Player p : players) {
+            sb.append(d).append(Protocol.getTokenPlayer()).append(t)
+                    .append(p.id()).append(t)
+                    .append(p.x()).append(t)
+                    .append(p.y()).append(t)
+                    .append(p.alive()).append(t)
+                    .append(p.bombsAvailable()).append(t)
+                    .append(p.name() != null ? p.name() : "").append(t)
+                    .append(p.inputTick());
+        }
+        for (Integer id : removedPlayers) {
+            sb.append(d).append(Protocol.getTokenRemovedPlayer()).append(t).append(id);
+        }
+        for (Bomb b : bombs) {
+            sb.append(d).append(Protocol.getTokenBomb()).append(t)
+                    .append(b.ownerId()).append(t)
+                    .append(b.x()).append(t)
+                    .append(b.y()).append(t)
+                    .append(b.timer());
+        }
+        for (Integer cell : removedBombs) {
+            sb.append(d).append(Protocol.getTokenRemovedBomb()).append(t).append(cell);
+        }
+        for (Explosion e : explosions) {
+            sb.append(d).append(Protocol.getTokenExplosion()).append(t)
+                    .append(e.x()).append(t)
+                    .append(e.y()).append(t)
+                    .append(e.ttl());
+        }
+        for (Integer cell : removedExplosions) {
+            sb.append(d).append(Protocol.getTokenRemovedExplosion()).append(t).append(cell);
+        }
+        for (Integer cell : clearedCells) {
+            sb.append(d).append(Protocol.getTokenClearedCell()).append(t).append(cell);
+        }
+        if (serverTime > 0) sb.append(d).append(Protocol.getTokenServerTime()).append(t).append(serverTime);
+        return sb.toString();
+    }
+}
@@ -1,17 +1,40 @@
 package ru.kpfu.itis.net.message;
 
+import ru.kpfu.itis.net.Protocol;
+import ru.kpfu.itis.net.WireFormat;
+
 public class HelloMessage extends Message {
     private final String name;
+    private final WireFormat format;
+    private final boolean serverTime;
     private static final String DELIMITER = "|";
 
     public HelloMessage(String name) {
+        this(name, WireFormat.TEXT);
+    }
+
+    public HelloMessage(String name, WireFormat format) {
+        this(name, format, false);
+    }
+
+    public HelloMessage(String name, WireFormat format, boolean serverTime) {
         this.name = name;
+        this.format = format;
+        this.serverTime = serverTime;
     }
 
     public String name() {
         return name;
     }
 
+    public WireFormat format() {
+        return format;
+    }
+
+    public boolean serverTime() {
+        return serverTime;
+    }
+
     @Override
     public MessageType getType() {
         return MessageType.HELLO;
@@ -19,6 +42,7 @@ public class HelloMessage extends Message {
 
     @Override
     public String serialize() {
-        return MessageType.HELLO.name() + DELIMITER + name;
+        String hello = MessageType.HELLO.name() + DELIMITER + name + DELIMITER + format.name();
+        return serverTime ? hello + DELIMITER + Protocol.getHelloServerTime() : hello;
     }
 }
@@ -7,15 +7,23 @@ public class InputMessage extends Message {
     private final boolean left;
     private final boolean right;
     private final boolean bomb;
+    private final int seq;
+    private final int tick;
     private static final String DELIMITER = "|";
 
     public InputMessage(int playerId, boolean up, boolean down, boolean left, boolean right, boolean bomb) {
+        this(playerId, up, down, left, right, bomb, 0, 0);
+    }
+
+    public InputMessage(int playerId, boolean up, boolean down, boolean left, boolean right, boolean bomb, int seq, int tick) {
         this.playerId = playerId;
         this.up = up;
         this.down = down;
         this.left = left;
         this.right = right;
         this.bomb = bomb;
+        this.seq = seq;
+        this.tick = tick;
     }
 
     public int playerId() {
@@ -42,6 +50,14 @@ public class InputMessage extends Message {
         return bomb;
     }
 
+    public int seq() {
+        return seq;
+    }
+
+    public int tick() {
+        return tick;
+    }
+
     @Override
     public MessageType getType() {
         return MessageType.INPUT;
@@ -49,6 +65,6 @@ public class InputMessage extends Message {
 
     @Override
     public String serialize() {
-        return MessageType.INPUT.name() + DELIMITER + playerId + DELIMITER + up + DELIMITER + down + DELIMITER + left + DELIMITER + right + DELIMITER + bomb;
+        return MessageType.INPUT.name() + DELIMITER + playerId + DELIMITER + up + DELIMITER + down + DELIMITER + left + DELIMITER + right + DELIMITER + bomb + DELIMITER + seq + DELIMITER + tick;
     }
 }
@@ -6,6 +6,8 @@ public enum MessageType {
     START,
     INPUT,
     STATE,
-    GAME_OVER
+    GAME_OVER,
+    DELTA,
+    ACK
 }
 
@@ -16,13 +16,27 @@ public class StateMessage extends Message {
     private final List<Bomb> bombs;
     private final List<Explosion> explosions;
     private final String grid;
+    private final int gridTop;
+    private final long serverTime;
 
     public StateMessage(long tick, Map<Integer, Player> players, List<Bomb> bombs, List<Explosion> explosions, String grid) {
+        this(tick, players, bombs, explosions, grid, 0);
+    }
+
+    public StateMessage(long tick, Map<Integer, Player> players, List<Bomb> bombs, List<Explosion> explosions,
+                        String grid, int gridTop) {
+        this(tick, players, bombs, explosions, grid, gridTop, 0);
+    }
+
+    public StateMessage(long tick, Map<Integer, Player> players, List<Bomb> bombs, List<Explosion> explosions,
+                        String grid, int gridTop, long serverTime) {
         this.tick = tick;
         this.players = new HashMap<>(players);
         this.bombs = new ArrayList<>(bombs);
         this.explosions = new ArrayList<>(explosions);
         this.grid = grid;
+        this.gridTop = gridTop;
+        this.serverTime = serverTime;
     }
 
     public long tick() {
@@ -45,6 +59,18 @@ public class StateMessage extends Message {
         return grid;
     }
 
+    public int gridTop() {
+        return gridTop;
+    }
+
+    public long serverTime() {
+        return serverTime;
+    }
+
+    public StateMessage stamped(long serverTime) {
+        return new StateMessage(tick, players, bombs, explosions, grid, gridTop, serverTime);
+    }
+
     @Override
     public MessageType getType() {
         return MessageType.STATE;
@@ -61,7 +87,8 @@ public class StateMessage extends Message {
                     .append(p.y()).append(Protocol.getTokenDelimiter())
                     .append(p.alive()).append(Protocol.getTokenDelimiter())
                     .append(p.bombsAvailable()).append(Protocol.getTokenDelimiter())
-                    .append(p.name());
+                    .append(p.name()).append(Protocol.getTokenDelimiter())
+                    .append(p.inputTick());
         }
         for (Bomb b : bombs) {
             sb.append(Protocol.getDelimiter()).append(Protocol.getTokenBomb()).append(Protocol.getTokenDelimiter())
@@ -77,6 +104,11 @@ public class StateMessage extends Message {
                     .append(e.ttl());
         }
         sb.append(Protocol.getDelimiter()).append(Protocol.getTokenMap()).append(Protocol.getTokenDelimiter()).append(grid);
+        if (gridTop > 0) sb.append(Protocol.getTokenDelimiter()).append(gridTop);
+        if (serverTime > 0) {
+            sb.append(Protocol.getDelimiter()).append(Protocol.getTokenServerTime()).append(Protocol.getTokenDelimiter())
+                    .append(serverTime);
+        }
         return sb.toString();
     }
 }
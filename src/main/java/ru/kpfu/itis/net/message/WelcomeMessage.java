@@ -1,17 +1,25 @@
 package ru.kpfu.itis.net.message;
 
+import ru.kpfu.itis.net.WireFormat;
+
 public class WelcomeMessage extends Message {
     private final int playerId;
     private final int width;
     private final int height;
     private final String map;
+    private final WireFormat format;
     private static final String DELIMITER = "|";
 
     public WelcomeMessage(int playerId, int width, int height, String map) {
+        this(playerId, width, height, map, WireFormat.TEXT);
+    }
+
+    public WelcomeMessage(int playerId, int width, int height, String map, WireFormat format) {
         this.playerId = playerId;
         this.width = width;
         this.height = height;
         this.map = map;
+        this.format = format;
     }
 
     public int playerId() {
@@ -30,6 +38,10 @@ public class WelcomeMessage extends Message {
         return map;
     }
 
+    public WireFormat format() {
+        return format;
+    }
+
     @Override
     public MessageType getType() {
         return MessageType.WELCOME;
@@ -37,6 +49,6 @@ public class WelcomeMessage extends Message {
 
     @Override
     public String serialize() {
-        return MessageType.WELCOME.name() + DELIMITER + playerId + DELIMITER + width + DELIMITER + height + DELIMITER + map;
+        return MessageType.WELCOME.name() + DELIMITER + playerId + DELIMITER + width + DELIMITER + height + DELIMITER + map + DELIMITER + format.name();
     }
 }
@@ -0,0 +1,317 @@
+package ru.kpfu.itis.replay;
+
+import ru.kpfu.itis.model.Simulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class Replay {
+    private final long seed;
+    private final int width;
+    private final int height;
+    private final int maxPlayers;
+    private final long startedMillis;
+    private final ByteBuffer records;
+    private long endTick;
+    private int winnerId = -1;
+    private long stateHash;
+    private boolean complete;
+    private int keyframeInterval = ReplayFormat.KEYFRAME_INTERVAL;
+    private long[] keyframeTicks = new long[0];
+    private long[] keyframeOffsets = new long[0];
+
+    Replay(ByteBuffer data) {
+        ByteBuffer in = data.duplicate();
+        if (in.remaining() < ReplayFormat.HEADER_BYTES || in.getInt() != ReplayFormat.MAGIC) {
+            throw new IllegalArgumentException("Это не файл повтора");
+        }
+        short version = in.getShort();
+        if (version < ReplayFormat.MIN_VERSION || version > ReplayFormat.VERSION) {
+            throw new IllegalArgumentException("Неподдерживаемая версия повтора: " + version);
+        }
+        seed = in.getLong();
+        width = Short.toUnsignedInt(in.getShort());
+        height = Short.toUnsignedInt(in.getShort());
+        maxPlayers = Short.toUnsignedInt(in.getShort());
+        startedMillis = in.getLong();
+        ByteBuffer rest = in.slice();
+        if (!readTrailer(rest)) {
+            records = rest;
+            scan();
+        } else {
+            records = rest.slice(0, (int) indexOffset(rest));
+        }
+    }
+
+    public static Replay load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Replay(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int maxPlayers() {
+        return maxPlayers;
+    }
+
+    public long startedMillis() {
+        return startedMillis;
+    }
+
+    public long endTick() {
+        return endTick;
+    }
+
+    public int winnerId() {
+        return winnerId;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public int keyframeCount() {
+        return keyframeTicks.length;
+    }
+
+    public Cursor start() {
+        return new Cursor();
+    }
+
+    public Simulation play() {
+        Cursor cursor = start();
+        cursor.advanceTo(endTick);
+        return cursor.simulation();
+    }
+
+    private static long indexOffset(ByteBuffer rest) {
+        return rest.getLong(rest.limit() - ReplayFormat.TRAILER_BYTES);
+    }
+
+    private boolean readTrailer(ByteBuffer rest) {
+        int limit = rest.limit();
+        if (limit < ReplayFormat.TRAILER_BYTES || rest.getInt(limit - 4) != ReplayFormat.TRAILER_MAGIC) return false;
+        ByteBuffer trailer = rest.slice(limit - ReplayFormat.TRAILER_BYTES, ReplayFormat.TRAILER_BYTES);
+        long indexOffset = trailer.getLong();
+        int count = trailer.getInt();
+        keyframeInterval = trailer.getInt();
+        endTick = trailer.getLong();
+        winnerId = trailer.getInt() - 1;
+        stateHash = trailer.getLong();
+        complete = true;
+        keyframeTicks = new long[count];
+        keyframeOffsets = new long[count];
+        ByteBuffer index = rest.slice((int) indexOffset, count * 16);
+        for (int i = 0; i < count; i++) {
+            keyframeTicks[i] = index.getLong();
+            keyframeOffsets[i] = index.getLong();
+        }
+        return true;
+    }
+
+    private void scan() {
+        ByteBuffer in = records.duplicate();
+        long tick = 0;
+        int count = 0;
+        scan:
+        while (in.hasRemaining()) {
+            int start = in.position();
+            byte type = in.get();
+            if (type == ReplayFormat.END_OF_DATA) break;
+            tick += ReplayFormat.readVarLong(in);
+            endTick = tick;
+            switch (type) {
+                case ReplayFormat.JOIN -> {
+                    ReplayFormat.readVarLong(in);
+                    int length = (int) ReplayFormat.readVarLong(in);
+                    in.position(in.position() + length);
+                }
+                case ReplayFormat.LEAVE -> ReplayFormat.readVarLong(in);
+                case ReplayFormat.INPUT -> {
+                    ReplayFormat.readVarLong(in);
+                    in.get();
+                }
+                case ReplayFormat.KEYFRAME -> {
+                    int length = (int) ReplayFormat.readVarLong(in);
+                    if (in.remaining() < length) break scan;
+                    in.position(in.position() + length);
+                    if (count == keyframeTicks.length) {
+                        keyframeTicks = Arrays.copyOf(keyframeTicks, Math.max(16, count * 2));
+                        keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframeTicks.length);
+                    }
+                    keyframeTicks[count] = tick - 1;
+                    keyframeOffsets[count] = start;
+                    count++;
+                }
+                case ReplayFormat.END -> {
+                    endTick = tick - 1;
+                    winnerId = (int) ReplayFormat.readVarLong(in) - 1;
+                    stateHash = in.getLong();
+                    complete = true;
+                    break scan;
+                }
+                default -> throw new IllegalArgumentException("Неизвестная запись повтора: " + type);
+            }
+        }
+        keyframeTicks = Arrays.copyOf(keyframeTicks, count);
+        keyframeOffsets = Arrays.copyOf(keyframeOffsets, count);
+    }
+
+    private int keyframeAtOrBefore(long tick) {
+        int i = (int) Math.min(keyframeTicks.length - 1, tick / keyframeInterval - 1);
+        while (i >= 0 && keyframeTicks[i] > tick) i--;
+        while (i + 1 < keyframeTicks.length && keyframeTicks[i + 1] <= tick) i++;
+        return i;
+    }
+
+    public class Cursor {
+        private Simulation sim;
+        private ByteBuffer in;
+        private byte type;
+        private long recordTick;
+        private boolean verified;
+
+        Cursor() {
+            reset();
+        }
+
+        public Simulation simulation() {
+            return sim;
+        }
+
+        public long tick() {
+            return sim.tick();
+        }
+
+        public void seek(long tick) {
+            long target = Math.max(0, Math.min(tick, endTick));
+            int k = keyframeAtOrBefore(target);
+            long from = k >= 0 ? keyframeTicks[k] : 0;
+            if (sim.tick() > target || sim.tick() < from) {
+                if (k >= 0) restore(k);
+                else reset();
+            }
+            advanceTo(target);
+        }
+
+        public void advanceTo(long tick) {
+            long target = Math.min(tick, endTick);
+            while (sim.tick() < target) {
+                long next = sim.tick() + 1;
+                while (peek() && recordTick == next && type != ReplayFormat.END) {
+                    apply();
+                }
+                if (type != ReplayFormat.END && type != ReplayFormat.END_OF_DATA && recordTick < next) {
+                    throw new IllegalStateException("Записи повтора идут не по порядку на тике " + recordTick);
+                }
+                sim.step();
+            }
+            if (sim.tick() == endTick && complete && !verified) {
+                while (peek() && type != ReplayFormat.END) {
+                    apply();
+                }
+                int winner = sim.isGameOver() ? sim.winnerId() : -1;
+                if (sim.stateHash() != stateHash || winner != winnerId) {
+                    throw new IllegalStateException("Повтор расходится с записью на тике " + endTick);
+                }
+                verified = true;
+            }
+        }
+
+        private void reset() {
+            sim = new Simulation(width, height, maxPlayers, seed);
+            in = records.duplicate();
+            type = -1;
+            recordTick = 0;
+            verified = false;
+        }
+
+        private void restore(int k) {
+            sim = new Simulation(width, height, maxPlayers, seed);
+            in = records.duplicate();
+            in.position((int) keyframeOffsets[k]);
+            if (in.get() != ReplayFormat.KEYFRAME) throw new IllegalStateException("Неверный индекс ключевых кадров");
+            ReplayFormat.readVarLong(in);
+            applyKeyframe();
+            type = -1;
+            recordTick = keyframeTicks[k] + 1;
+            verified = false;
+        }
+
+        private void applyKeyframe() {
+            int length = (int) ReplayFormat.readVarLong(in);
+            ByteBuffer state = in.slice(in.position(), length);
+            in.position(in.position() + length);
+            sim.restoreState(state);
+            int pending = state.getInt();
+            for (int i = 0; i < pending; i++) {
+                int playerId = state.getInt();
+                sim.restoreInput(playerId, state.get());
+            }
+        }
+
+        private boolean peek() {
+            if (type >= 0) return type != ReplayFormat.END_OF_DATA;
+            if (!in.hasRemaining()) {
+                type = ReplayFormat.END_OF_DATA;
+                return false;
+            }
+            type = in.get();
+            if (type == ReplayFormat.END_OF_DATA) return false;
+            recordTick += ReplayFormat.readVarLong(in);
+            return true;
+        }
+
+        private void apply() {
+            switch (type) {
+                case ReplayFormat.JOIN -> {
+                    int playerId = (int) ReplayFormat.readVarLong(in);
+                    byte[] name = new byte[(int) ReplayFormat.readVarLong(in)];
+                    in.get(name);
+                    int joined = sim.addPlayer(new String(name, StandardCharsets.UTF_8));
+                    if (joined != playerId) {
+                        throw new IllegalStateException("Повтор расходится: игрок " + playerId + " получил id " + joined);
+                    }
+                }
+                case ReplayFormat.LEAVE -> sim.removePlayer((int) ReplayFormat.readVarLong(in));
+                case ReplayFormat.INPUT -> {
+                    int playerId = (int) ReplayFormat.readVarLong(in);
+                    sim.postInput(playerId, in.get());
+                }
+                case ReplayFormat.KEYFRAME -> {
+                    int length = (int) ReplayFormat.readVarLong(in);
+                    in.position(in.position() + length);
+                }
+                default -> throw new IllegalArgumentException("Неизвестная запись повтора: " + type);
+            }
+            type = -1;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        for (String arg : args) {
+            Replay replay = load(Path.of(arg));
+            Simulation sim = replay.play();
+            System.out.printf("%s: seed %016x, карта %dx%d, тиков %d, ключевых кадров %d, победитель %s, %s%n", arg,
+                    replay.seed(), replay.width(), replay.height(), sim.tick(), replay.keyframeCount(),
+                    sim.isGameOver() ? sim.winnerName() : "-",
+                    replay.isComplete() ? "совпадает с записью" : "запись оборвана");
+        }
+    }
+}
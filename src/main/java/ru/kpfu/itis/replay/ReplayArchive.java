@@ -0,0 +1,125 @@
+package ru.kpfu.itis.replay;
+
+import ru.kpfu.itis.model.Simulation;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ReplayArchive {
+    private static final int REGION_BYTES = 256 * 1024;
+    private static final Chunk STOP = new Chunk(null, null, true);
+
+    private final Path directory;
+    private final BlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private record Chunk(Sink sink, byte[] data, boolean last) {
+    }
+
+    static class Sink {
+        private final Path file;
+        private FileChannel channel;
+        private MappedByteBuffer region;
+        private long written;
+        private boolean failed;
+
+        Sink(Path file) {
+            this.file = file;
+        }
+    }
+
+    public ReplayArchive(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.writer = new Thread(this::run, "replay-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    public ReplayRecorder open(int roomId, Simulation sim, int maxPlayers) {
+        String name = String.format("match-%d-%d-%016x%s", System.currentTimeMillis(), roomId, sim.seed(),
+                ReplayFormat.EXTENSION);
+        return new ReplayRecorder(this, new Sink(directory.resolve(name)), sim, maxPlayers);
+    }
+
+    public long bytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public long failures() {
+        return failures.get();
+    }
+
+    public void close() {
+        queue.add(STOP);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void submit(Sink sink, byte[] data, boolean last) {
+        queue.add(new Chunk(sink, data, last));
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Chunk chunk = queue.take();
+                if (chunk == STOP) return;
+                write(chunk);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Chunk chunk) {
+        Sink sink = chunk.sink();
+        if (sink.failed) return;
+        try {
+            if (sink.channel == null) {
+                sink.channel = FileChannel.open(sink.file, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            byte[] data = chunk.data();
+            int offset = 0;
+            while (offset < data.length) {
+                if (sink.region == null || !sink.region.hasRemaining()) {
+                    sink.region = sink.channel.map(FileChannel.MapMode.READ_WRITE, sink.written, REGION_BYTES);
+                }
+                int n = Math.min(data.length - offset, sink.region.remaining());
+                sink.region.put(data, offset, n);
+                offset += n;
+                sink.written += n;
+            }
+            bytesWritten.addAndGet(data.length);
+            if (chunk.last()) {
+                sink.region = null;
+                sink.channel.truncate(sink.written);
+                sink.channel.close();
+            }
+        } catch (IOException e) {
+            sink.failed = true;
+            failures.incrementAndGet();
+            System.err.println("Не удалось записать повтор " + sink.file + ": " + e);
+            try {
+                if (sink.channel != null) sink.channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
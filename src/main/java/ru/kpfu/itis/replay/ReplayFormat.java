@@ -0,0 +1,42 @@
+package ru.kpfu.itis.replay;
+
+import java.nio.ByteBuffer;
+
+final class ReplayFormat {
+    static final int MAGIC = 0x424D5250;
+    static final short VERSION = 4;
+    static final short MIN_VERSION = 4;
+    static final int HEADER_BYTES = 4 + 2 + 8 + 2 + 2 + 2 + 8;
+    static final int TRAILER_MAGIC = 0x424D5249;
+    static final int TRAILER_BYTES = 8 + 4 + 4 + 8 + 4 + 8 + 4;
+    static final int KEYFRAME_INTERVAL = 256;
+    static final String EXTENSION = ".bmr";
+
+    static final byte END_OF_DATA = 0;
+    static final byte JOIN = 1;
+    static final byte LEAVE = 2;
+    static final byte INPUT = 3;
+    static final byte END = 4;
+    static final byte KEYFRAME = 5;
+
+    private ReplayFormat() {
+    }
+
+    static void writeVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Слишком длинный varint");
+    }
+}
@@ -0,0 +1,177 @@
+package ru.kpfu.itis.replay;
+
+import ru.kpfu.itis.model.Bomb;
+import ru.kpfu.itis.model.Explosion;
+import ru.kpfu.itis.model.FireMap;
+import ru.kpfu.itis.model.GameState;
+import ru.kpfu.itis.model.GameStateSource;
+import ru.kpfu.itis.model.Player;
+import ru.kpfu.itis.model.Simulation;
+import ru.kpfu.itis.model.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+public class ReplayPlayer implements GameStateSource {
+    public enum Speed {
+        NORMAL("1×", 1),
+        FAST("8×", 8),
+        MAX("Макс", 0);
+
+        private final String label;
+        private final int factor;
+
+        Speed(String label, int factor) {
+            this.label = label;
+            this.factor = factor;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(70);
+    private static final long MAX_BATCH_NANOS = TimeUnit.MILLISECONDS.toNanos(15);
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final Replay replay;
+    private final Replay.Cursor cursor;
+    private final Thread thread;
+    private volatile GameState published;
+    private volatile Runnable repaintListener = () -> {
+    };
+    private volatile long currentTick;
+    private volatile boolean running = true;
+    private volatile boolean playing;
+    private volatile Speed speed = Speed.NORMAL;
+    private int followId;
+
+    public ReplayPlayer(Replay replay) {
+        this.replay = replay;
+        this.cursor = replay.start();
+        publish();
+        this.thread = Thread.ofPlatform().daemon().name("replay-player").start(this::run);
+    }
+
+    public long tick() {
+        return currentTick;
+    }
+
+    public long endTick() {
+        return replay.endTick();
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public void play() {
+        if (currentTick >= replay.endTick()) seek(0);
+        playing = true;
+        LockSupport.unpark(thread);
+    }
+
+    public void pause() {
+        playing = false;
+    }
+
+    public Speed speed() {
+        return speed;
+    }
+
+    public void setSpeed(Speed speed) {
+        this.speed = speed;
+        LockSupport.unpark(thread);
+    }
+
+    public synchronized void seek(long tick) {
+        cursor.seek(tick);
+        publish();
+    }
+
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public GameState getStateSnapshot() {
+        return published;
+    }
+
+    @Override
+    public void setRepaintListener(Runnable listener) {
+        this.repaintListener = listener;
+    }
+
+    private void run() {
+        long next = System.nanoTime();
+        while (running) {
+            if (!playing || currentTick >= replay.endTick()) {
+                playing = playing && currentTick < replay.endTick();
+                LockSupport.parkNanos(IDLE_NANOS);
+                next = System.nanoTime();
+                continue;
+            }
+            Speed current = speed;
+            if (current == Speed.MAX) {
+                long until = System.nanoTime() + MAX_BATCH_NANOS;
+                synchronized (this) {
+                    while (cursor.tick() < replay.endTick() && System.nanoTime() < until) {
+                        cursor.advanceTo(cursor.tick() + 1);
+                    }
+                    publish();
+                }
+                Thread.yield();
+                next = System.nanoTime();
+                continue;
+            }
+            synchronized (this) {
+                cursor.advanceTo(cursor.tick() + 1);
+                publish();
+            }
+            next += TICK_NANOS / current.factor;
+            long wait = next - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            else if (wait < -TICK_NANOS) next = System.nanoTime();
+        }
+    }
+
+    private void publish() {
+        Simulation sim = cursor.simulation();
+        World world = sim.world();
+        FireMap fire = sim.fire();
+        char[][] grid = new char[sim.height()][];
+        for (int y = 0; y < grid.length; y++) {
+            grid[y] = sim.row(y).clone();
+        }
+        if (world.indexOf(followId) < 0) followId = world.playerCount() > 0 ? world.playerId(0) : 0;
+
+        Map<Integer, Player> players = new HashMap<>();
+        for (int i = 0; i < world.playerCount(); i++) {
+            players.put(world.playerId(i), world.player(i));
+        }
+        List<Bomb> bombs = new ArrayList<>(world.bombCount());
+        for (int i = 0; i < world.bombCount(); i++) {
+            bombs.add(world.bomb(i));
+        }
+        List<Explosion> explosions = new ArrayList<>(fire.count());
+        for (int i = 0; i < fire.count(); i++) {
+            int cell = fire.cellAt(i);
+            explosions.add(new Explosion(fire.x(cell), fire.y(cell), fire.ttl(cell)));
+        }
+
+        GameState state = new GameState(sim.width(), sim.height(), grid, followId, "Повтор")
+                .withEntities(players, bombs, explosions);
+        if (sim.isGameOver()) state = state.withGameOver(sim.winnerId(), sim.winnerName());
+        published = state;
+        currentTick = sim.tick();
+        repaintListener.run();
+    }
+}
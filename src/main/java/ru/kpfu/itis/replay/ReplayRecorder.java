@@ -0,0 +1,154 @@
+package ru.kpfu.itis.replay;
+
+import ru.kpfu.itis.model.Simulation;
+import ru.kpfu.itis.model.World;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class ReplayRecorder implements Simulation.InputListener {
+    private static final int FLUSH_BYTES = 8 * 1024;
+    private static final int MAX_RECORD_BYTES = 1 + 10 + 5 + 5 + 3 * 255;
+
+    private final ReplayArchive archive;
+    private final ReplayArchive.Sink sink;
+    private final Simulation sim;
+    private final ByteBuffer buffer = ByteBuffer.allocate(FLUSH_BYTES + MAX_RECORD_BYTES);
+    private int[] expected = new int[16];
+    private long[] keyframeTicks = new long[16];
+    private long[] keyframeOffsets = new long[16];
+    private int keyframeCount;
+    private long submitted;
+    private long lastTick;
+    private boolean finished;
+
+    ReplayRecorder(ReplayArchive archive, ReplayArchive.Sink sink, Simulation sim, int maxPlayers) {
+        this.archive = archive;
+        this.sink = sink;
+        this.sim = sim;
+        buffer.putInt(ReplayFormat.MAGIC);
+        buffer.putShort(ReplayFormat.VERSION);
+        buffer.putLong(sim.seed());
+        buffer.putShort((short) sim.width());
+        buffer.putShort((short) sim.height());
+        buffer.putShort((short) maxPlayers);
+        buffer.putLong(System.currentTimeMillis());
+    }
+
+    public void join(int playerId, String name) {
+        if (finished) return;
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 3 * 255);
+        record(ReplayFormat.JOIN, sim.tick() + 1);
+        ReplayFormat.writeVarLong(buffer, playerId);
+        ReplayFormat.writeVarLong(buffer, length);
+        buffer.put(bytes, 0, length);
+        expect(playerId, 0);
+    }
+
+    public void leave(int playerId) {
+        if (finished) return;
+        record(ReplayFormat.LEAVE, sim.tick() + 1);
+        ReplayFormat.writeVarLong(buffer, playerId);
+    }
+
+    @Override
+    public void onInput(int playerId, int flags) {
+        if (finished) return;
+        record(ReplayFormat.INPUT, sim.tick());
+        ReplayFormat.writeVarLong(buffer, playerId);
+        buffer.put((byte) flags);
+        expect(playerId, flags & ~World.BOMB);
+    }
+
+    public void endTick() {
+        if (finished) return;
+        if (sim.tick() % ReplayFormat.KEYFRAME_INTERVAL == 0) keyframe();
+        if (buffer.position() >= FLUSH_BYTES) flush();
+    }
+
+    public void finish() {
+        if (finished) return;
+        int winner = sim.isGameOver() ? sim.winnerId() + 1 : 0;
+        long hash = sim.stateHash();
+        record(ReplayFormat.END, sim.tick() + 1);
+        ReplayFormat.writeVarLong(buffer, winner);
+        buffer.putLong(hash);
+        finished = true;
+        flush();
+
+        long indexOffset = submitted - ReplayFormat.HEADER_BYTES;
+        ByteBuffer tail = ByteBuffer.allocate(keyframeCount * 16 + ReplayFormat.TRAILER_BYTES);
+        for (int i = 0; i < keyframeCount; i++) {
+            tail.putLong(keyframeTicks[i]);
+            tail.putLong(keyframeOffsets[i]);
+        }
+        tail.putLong(indexOffset);
+        tail.putInt(keyframeCount);
+        tail.putInt(ReplayFormat.KEYFRAME_INTERVAL);
+        tail.putLong(sim.tick());
+        tail.putInt(winner);
+        tail.putLong(hash);
+        tail.putInt(ReplayFormat.TRAILER_MAGIC);
+        archive.submit(sink, tail.array(), true);
+    }
+
+    private void keyframe() {
+        if (keyframeCount == keyframeTicks.length) {
+            keyframeTicks = Arrays.copyOf(keyframeTicks, keyframeCount * 2);
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframeCount * 2);
+        }
+        keyframeTicks[keyframeCount] = sim.tick();
+        keyframeOffsets[keyframeCount] = submitted + buffer.position() - ReplayFormat.HEADER_BYTES;
+        keyframeCount++;
+
+        World world = sim.world();
+        ByteBuffer state = ByteBuffer.allocate(sim.stateSize() + 4 + world.playerCount() * 6);
+        sim.writeState(state);
+        int pending = 0;
+        for (int i = 0; i < world.playerCount(); i++) {
+            if (expected(world.playerId(i)) != 0) pending++;
+        }
+        state.putInt(pending);
+        for (int i = 0; i < world.playerCount(); i++) {
+            int playerId = world.playerId(i);
+            if (expected(playerId) == 0) continue;
+            state.putInt(playerId);
+            state.put((byte) expected(playerId));
+        }
+        state.flip();
+
+        record(ReplayFormat.KEYFRAME, sim.tick() + 1);
+        ReplayFormat.writeVarLong(buffer, state.remaining());
+        flush();
+        byte[] chunk = new byte[state.remaining()];
+        state.get(chunk);
+        submitted += chunk.length;
+        archive.submit(sink, chunk, false);
+    }
+
+    private void record(byte type, long tick) {
+        if (buffer.position() >= FLUSH_BYTES) flush();
+        buffer.put(type);
+        ReplayFormat.writeVarLong(buffer, tick - lastTick);
+        lastTick = tick;
+    }
+
+    private int expected(int playerId) {
+        return playerId < expected.length ? expected[playerId] : 0;
+    }
+
+    private void expect(int playerId, int flags) {
+        if (playerId >= expected.length) expected = Arrays.copyOf(expected, Math.max(playerId + 1, expected.length * 2));
+        expected[playerId] = flags;
+    }
+
+    private void flush() {
+        if (buffer.position() == 0) return;
+        byte[] chunk = Arrays.copyOf(buffer.array(), buffer.position());
+        submitted += chunk.length;
+        buffer.clear();
+        archive.submit(sink, chunk, false);
+    }
+}
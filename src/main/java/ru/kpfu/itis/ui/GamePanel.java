@@ -1,7 +1,10 @@
 package ru.kpfu.itis.ui;
 
+import ru.kpfu.itis.metrics.PaintEvent;
 import ru.kpfu.itis.model.GameState;
+import ru.kpfu.itis.model.GameStateSource;
 import ru.kpfu.itis.model.Player;
+import ru.kpfu.itis.model.Position;
 import ru.kpfu.itis.net.GameClient;
 
 import javax.swing.JPanel;
@@ -17,19 +20,69 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
 public class GamePanel extends JPanel {
+    private static final int MIN_TILE = 16;
+    private static final int VIEWPORT_TILE = 32;
+    private static final int FRAME_MILLIS = 30;
+    private static final int FLOOR_SPRITE = 0;
+    private static final int WALL_SPRITE = 1;
+    private static final int CRATE_SPRITE = 2;
+
+    private static final Color BACKGROUND = new Color(20, 20, 20);
+    private static final Color FIELD_BORDER = new Color(40, 40, 40);
+    private static final Color WALL = new Color(80, 80, 120);
+    private static final Color WALL_INNER = new Color(50, 50, 90);
+    private static final Color CRATE = new Color(150, 110, 70);
+    private static final Color CRATE_PLANKS = new Color(120, 80, 50);
+    private static final Color FLOOR = new Color(60, 100, 60);
+    private static final Color FLOOR_LIGHT = new Color(80, 120, 80, 100);
+    private static final Color TILE_EDGE = new Color(0, 0, 0, 30);
+    private static final Color FIRE = new Color(255, 200, 40, 170);
+    private static final Color FIRE_GLOW = new Color(255, 100, 0, 100);
+    private static final Color BOMB_BODY = new Color(100, 60, 20);
+    private static final Color[] SELF_COLORS = {new Color(0, 200, 255), new Color(0, 200, 255).darker()};
+    private static final Color INFO_BAR = new Color(30, 30, 50, 220);
+    private static final Color DIVIDER = new Color(255, 255, 255, 50);
+    private static final Color OVERLAY = new Color(0, 0, 0, 200);
+    private static final Color HINT = new Color(255, 255, 255, 150);
+
+    private final GameStateSource source;
     private final GameClient client;
-    private final Timer repaintTimer;
+    private final Timer frameTimer;
     private final boolean connectionLost = false;
     private int tileSize = 48;
     private int offsetX = 0;
     private int offsetY = 0;
     private int gameWidth = 0;
     private int gameHeight = 0;
+    private int viewCols = 0;
+    private int viewRows = 0;
+    private int cameraX = 0;
+    private int cameraY = 0;
+    private boolean layoutDirty = true;
+    private final Map<Integer, Color[]> playerColors = new HashMap<>();
+    private Font nameFont;
+    private Font bombFont;
+    private Font infoFont;
+    private BufferedImage[] sprites;
+    private BufferedImage tileLayer;
+    private int spriteSize;
+    private char[] drawnCells;
+    private long drawnVersion;
+    private int layerX;
+    private int layerY;
 
     public GamePanel(GameClient client) {
+        this(client, client);
+    }
+
+    public GamePanel(GameStateSource source, GameClient client) {
+        this.source = source;
         this.client = client;
         setFocusable(true);
         setPreferredSize(new Dimension(800, 640));
@@ -37,184 +90,284 @@ public class GamePanel extends JPanel {
         addComponentListener(new ComponentAdapter() {
             @Override
             public void componentResized(ComponentEvent e) {
-                recalculateLayout();
+                layoutDirty = true;
                 repaint();
             }
         });
 
-        addKeyListener(new KeyHandler());
-        repaintTimer = new Timer(30, e  -> repaint());
-        repaintTimer.start();
+        if (client != null) addKeyListener(new KeyHandler());
+        frameTimer = new Timer(FRAME_MILLIS, e -> repaint());
+        frameTimer.setRepeats(false);
+        source.setRepaintListener(this::repaint);
     }
 
-    private void recalculateLayout() {
-        GameState state = client.getStateSnapshot();
-        if (state == null) return;
-
+    private void recalculateLayout(GameState state) {
+        layoutDirty = false;
         int panelWidth = getWidth();
         int panelHeight = getHeight();
 
         int maxTileWidth = (panelWidth - 40) / state.width();
         int maxTileHeight = (panelHeight - 60) / (state.height() + 1);
 
-        tileSize = Math.min(maxTileWidth, maxTileHeight);
-        tileSize = Math.max(16, Math.min(64, tileSize));
+        int fitTile = Math.min(maxTileWidth, maxTileHeight);
+        tileSize = fitTile >= MIN_TILE ? Math.min(64, fitTile) : VIEWPORT_TILE;
+
+        viewCols = Math.max(1, Math.min(state.width(), (panelWidth - 40) / tileSize));
+        viewRows = Math.max(1, Math.min(state.height(), (panelHeight - 60) / tileSize - 1));
 
-        gameWidth = state.width() * tileSize;
-        gameHeight = (state.height() * tileSize) + 40;
+        gameWidth = viewCols * tileSize;
+        gameHeight = (viewRows * tileSize) + 40;
 
         offsetX = (panelWidth - gameWidth) / 2;
         offsetY = (panelHeight - gameHeight) / 2;
+
+        nameFont = new Font("Arial", Font.BOLD, Math.max(10, tileSize/4));
+        bombFont = new Font("Arial", Font.BOLD, Math.max(8, tileSize/5));
+        infoFont = new Font("Arial", Font.BOLD, Math.max(14, tileSize/3));
     }
 
     @Override
     protected void paintComponent(Graphics g) {
+        PaintEvent event = new PaintEvent();
+        event.begin();
+        String screen = paintFrame(g);
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = getWidth();
+            event.height = getHeight();
+            event.screen = screen;
+            event.commit();
+        }
+    }
+
+    private String paintFrame(Graphics g) {
         super.paintComponent(g);
         Graphics2D g2 = (Graphics2D) g;
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
 
-        g2.setColor(new Color(20, 20, 20));
+        g2.setColor(BACKGROUND);
         g2.fillRect(0, 0, getWidth(), getHeight());
 
         if (connectionLost) {
             drawConnectionLost(g2);
-            return;
+            return "connection-lost";
         }
 
-        GameState state = client.getStateSnapshot();
+        GameState state = source.getStateSnapshot();
         if (state == null) {
             drawCentered(g2, "Ожидание сервера...");
-            return;
+            return "waiting";
         }
 
         if (state.isGameOver()) {
             drawGameOver(g2, state);
-            return;
+            return "game-over";
         }
 
-        if (tileSize == 0 || offsetX == 0) {
-            recalculateLayout();
+        if (layoutDirty || tileSize == 0 || offsetX == 0) {
+            recalculateLayout(state);
         }
 
         drawGameField(g2, state);
 
         drawUI(g2, state);
+        if (state.isAnimating() && !frameTimer.isRunning()) frameTimer.start();
+        return "game";
     }
 
-    private void drawGameField(Graphics2D g2, GameState state) {
-        g2.setColor(new Color(40, 40, 40));
-        g2.fillRect(offsetX - 10, offsetY - 10,
-                gameWidth + 20, state.height() * tileSize + 20);
-
-        for (int y = 0; y < state.height(); y++) {
-            for (int x = 0; x < state.width(); x++) {
-                char c = state.cellAt(x, y);
-                int px = offsetX + x * tileSize;
-                int py = offsetY + y * tileSize;
-
-                if (c == '#') {
-                    g2.setColor(new Color(80, 80, 120));
-                    g2.fillRect(px, py, tileSize, tileSize);
-                    g2.setColor(new Color(50, 50, 90));
-                    g2.fillRect(px + 2, py + 2, tileSize - 4, tileSize - 4);
-                } else if (c == '*') {
-                    g2.setColor(new Color(150, 110, 70));
-                    g2.fillRect(px, py, tileSize, tileSize);
-                    g2.setColor(new Color(120, 80, 50));
-                    for (int i = 0; i < 3; i++) {
-                        g2.drawRect(px + 4 + i * 3, py + 4, 2, tileSize - 8);
-                        g2.drawRect(px + 4, py + 4 + i * 3, tileSize - 8, 2);
-                    }
-                } else {
-                    g2.setColor(new Color(60, 100, 60));
-                    g2.fillRect(px, py, tileSize, tileSize);
-                    g2.setColor(new Color(80, 120, 80, 100));
-                    g2.fillRect(px + 1, py + 1, tileSize - 2, tileSize - 2);
-                }
+    private void updateCamera(GameState state, Map<Integer, Player> players) {
+        Player self = players.get(state.ownPlayerId());
+        if (self == null) return;
+        cameraX = Math.max(0, Math.min(state.width() - viewCols, self.x() - viewCols / 2));
+        cameraY = Math.max(0, Math.min(state.height() - viewRows, self.y() - viewRows / 2));
+    }
 
-                g2.setColor(new Color(0, 0, 0, 30));
-                g2.drawRect(px, py, tileSize, tileSize);
-            }
-        }
+    private boolean inView(int x, int y) {
+        return x >= cameraX && y >= cameraY && x < cameraX + viewCols && y < cameraY + viewRows;
+    }
 
-        g2.setColor(new Color(255, 200, 40, 170));
-        state.explosions().forEach(ex -> {
-            int px = offsetX + ex.x() * tileSize;
-            int py = offsetY + ex.y() * tileSize;
-            g2.fillRect(px, py, tileSize, tileSize);
+    private void drawGameField(Graphics2D g2, GameState state) {
+        Map<Integer, Player> players = state.players();
+        updateCamera(state, players);
 
-            int pulse = (int) (Math.sin(System.currentTimeMillis() / 100.0) * 5 + 5);
-            g2.setColor(new Color(255, 100, 0, 100));
+        g2.setColor(FIELD_BORDER);
+        g2.fillRect(offsetX - 10, offsetY - 10,
+                gameWidth + 20, viewRows * tileSize + 20);
+
+        drawTiles(g2, state);
+
+        int pulse = (int) (Math.sin(System.currentTimeMillis() / 100.0) * 5 + 5);
+        for (int i = 0; i < state.explosionCount(); i++) {
+            int x = state.explosionX(i);
+            int y = state.explosionY(i);
+            if (!inView(x, y)) continue;
+            int px = offsetX + (x - cameraX) * tileSize;
+            int py = offsetY + (y - cameraY) * tileSize;
+            g2.setColor(FIRE);
+            g2.fillRect(px, py, tileSize, tileSize);
+            g2.setColor(FIRE_GLOW);
             g2.fillRect(px - pulse/2, py - pulse/2, tileSize + pulse, tileSize + pulse);
-        });
-
-        state.bombs().forEach(b -> {
-            int px = offsetX + b.x() * tileSize;
-            int py = offsetY + b.y() * tileSize;
+        }
 
-            int pulse = (int) (Math.sin(System.currentTimeMillis() / 200.0) * 3 + 3);
+        int bombPulse = (int) (Math.sin(System.currentTimeMillis() / 200.0) * 3 + 3);
+        for (int i = 0; i < state.bombCount(); i++) {
+            int x = state.bombX(i);
+            int y = state.bombY(i);
+            if (!inView(x, y)) continue;
+            int px = offsetX + (x - cameraX) * tileSize;
+            int py = offsetY + (y - cameraY) * tileSize;
 
-            g2.setColor(new Color(100, 60, 20));
+            g2.setColor(BOMB_BODY);
             g2.fillOval(px + tileSize/4, py + tileSize/4, tileSize/2, tileSize/2);
 
             g2.setColor(Color.ORANGE);
-            g2.fillOval(px + tileSize/4 + pulse, py + tileSize/4 + pulse,
-                    tileSize/2 - pulse*2, tileSize/2 - pulse*2);
+            g2.fillOval(px + tileSize/4 + bombPulse, py + tileSize/4 + bombPulse,
+                    tileSize/2 - bombPulse*2, tileSize/2 - bombPulse*2);
 
             g2.setColor(Color.RED);
             g2.fillOval(px + tileSize/2 - 2, py + tileSize/4 - 4, 4, 8);
-        });
+        }
 
-        Map<Integer, Player> players = state.players();
+        FontMetrics nameMetrics = g2.getFontMetrics(nameFont);
+        FontMetrics bombMetrics = g2.getFontMetrics(bombFont);
         for (Player p : players.values()) {
-            if (!p.alive()) continue;
+            if (!p.alive() || !inView(p.x(), p.y())) continue;
 
-            int px = offsetX + p.x() * tileSize;
-            int py = offsetY + p.y() * tileSize;
+            Position pos = state.positionOf(p);
+            int px = offsetX + (int) Math.round((pos.x() - cameraX) * tileSize);
+            int py = offsetY + (int) Math.round((pos.y() - cameraY) * tileSize);
 
-            Color playerColor;
-            if (p.id() == state.ownPlayerId()) {
-                playerColor = new Color(0, 200, 255);
-            } else {
-                int hue = (p.id() * 137) % 360;
-                playerColor = Color.getHSBColor(hue / 360f, 0.8f, 0.9f);
-            }
+            boolean self = p.id() == state.ownPlayerId();
+            Color[] colors = self ? SELF_COLORS : playerColors.computeIfAbsent(p.id(), GamePanel::playerColors);
 
-            g2.setColor(playerColor);
+            g2.setColor(colors[0]);
             g2.fillOval(px + tileSize/4, py + tileSize/4, tileSize/2, tileSize/2);
 
-            g2.setColor(playerColor.darker());
+            g2.setColor(colors[1]);
             g2.drawOval(px + tileSize/4, py + tileSize/4, tileSize/2, tileSize/2);
 
             g2.setColor(Color.WHITE);
             g2.fillOval(px + tileSize/2 - 6, py + tileSize/2 - 2, 4, 4);
             g2.fillOval(px + tileSize/2 + 2, py + tileSize/2 - 2, 4, 4);
 
-            g2.setColor(Color.WHITE);
-            g2.setFont(new Font("Arial", Font.BOLD, Math.max(10, tileSize/4)));
-            FontMetrics fm = g2.getFontMetrics();
-            int nameWidth = fm.stringWidth(p.name());
+            g2.setFont(nameFont);
+            int nameWidth = nameMetrics.stringWidth(p.name());
             g2.drawString(p.name(), px + (tileSize - nameWidth)/2, py - 5);
 
-            if (p.id() == state.ownPlayerId()) {
+            if (self) {
                 g2.setColor(Color.YELLOW);
-                g2.setFont(new Font("Arial", Font.BOLD, Math.max(8, tileSize/5)));
+                g2.setFont(bombFont);
                 String bombText = "B: " + p.bombsAvailable();
-                int bombWidth = g2.getFontMetrics().stringWidth(bombText);
+                int bombWidth = bombMetrics.stringWidth(bombText);
                 g2.drawString(bombText, px + (tileSize - bombWidth)/2, py + tileSize + 12);
             }
         }
     }
 
+    private void drawTiles(Graphics2D g2, GameState state) {
+        int layerWidth = viewCols * tileSize;
+        int layerHeight = viewRows * tileSize;
+        if (tileLayer == null || spriteSize != tileSize
+                || tileLayer.getWidth() != layerWidth || tileLayer.getHeight() != layerHeight) {
+            sprites = renderSprites(tileSize);
+            spriteSize = tileSize;
+            tileLayer = new BufferedImage(layerWidth, layerHeight, BufferedImage.TYPE_INT_RGB);
+            drawnCells = new char[viewCols * viewRows];
+            drawnVersion = 0;
+            layerX = cameraX;
+            layerY = cameraY;
+        }
+
+        boolean scrolled = layerX != cameraX || layerY != cameraY;
+        if (scrolled || drawnVersion != state.version()) {
+            Graphics2D layer = tileLayer.createGraphics();
+            if (scrolled) scrollLayer(layer);
+            for (int y = 0; y < viewRows; y++) {
+                for (int x = 0; x < viewCols; x++) {
+                    char c = state.cellAt(cameraX + x, cameraY + y);
+                    if (c != '#' && c != '*') c = '.';
+                    int i = y * viewCols + x;
+                    if (drawnCells[i] == c) continue;
+                    drawnCells[i] = c;
+                    BufferedImage sprite = c == '#' ? sprites[WALL_SPRITE] : c == '*' ? sprites[CRATE_SPRITE] : sprites[FLOOR_SPRITE];
+                    layer.drawImage(sprite, x * tileSize, y * tileSize, null);
+                }
+            }
+            layer.dispose();
+            drawnVersion = state.version();
+        }
+
+        g2.drawImage(tileLayer, offsetX, offsetY, null);
+    }
+
+    private void scrollLayer(Graphics2D layer) {
+        int dx = layerX - cameraX;
+        int dy = layerY - cameraY;
+        layerX = cameraX;
+        layerY = cameraY;
+        if (Math.abs(dx) >= viewCols || Math.abs(dy) >= viewRows) {
+            Arrays.fill(drawnCells, (char) 0);
+            return;
+        }
+        layer.copyArea(0, 0, tileLayer.getWidth(), tileLayer.getHeight(), dx * tileSize, dy * tileSize);
+        char[] shifted = new char[drawnCells.length];
+        for (int y = 0; y < viewRows; y++) {
+            int fromY = y - dy;
+            if (fromY < 0 || fromY >= viewRows) continue;
+            for (int x = 0; x < viewCols; x++) {
+                int fromX = x - dx;
+                if (fromX >= 0 && fromX < viewCols) shifted[y * viewCols + x] = drawnCells[fromY * viewCols + fromX];
+            }
+        }
+        drawnCells = shifted;
+    }
+
+    private static BufferedImage[] renderSprites(int size) {
+        BufferedImage[] result = new BufferedImage[3];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2 = result[i].createGraphics();
+            if (i == WALL_SPRITE) {
+                g2.setColor(WALL);
+                g2.fillRect(0, 0, size, size);
+                g2.setColor(WALL_INNER);
+                g2.fillRect(2, 2, size - 4, size - 4);
+            } else if (i == CRATE_SPRITE) {
+                g2.setColor(CRATE);
+                g2.fillRect(0, 0, size, size);
+                g2.setColor(CRATE_PLANKS);
+                for (int k = 0; k < 3; k++) {
+                    g2.drawRect(4 + k * 3, 4, 2, size - 8);
+                    g2.drawRect(4, 4 + k * 3, size - 8, 2);
+                }
+            } else {
+                g2.setColor(FLOOR);
+                g2.fillRect(0, 0, size, size);
+                g2.setColor(FLOOR_LIGHT);
+                g2.fillRect(1, 1, size - 2, size - 2);
+            }
+            g2.setColor(TILE_EDGE);
+            g2.drawRect(0, 0, size, size);
+            g2.dispose();
+        }
+        return result;
+    }
+
+    private static Color[] playerColors(int id) {
+        int hue = (id * 137) % 360;
+        Color color = Color.getHSBColor(hue / 360f, 0.8f, 0.9f);
+        return new Color[]{color, color.darker()};
+    }
+
     private void drawUI(Graphics2D g2, GameState state) {
-        int infoY = offsetY + state.height() * tileSize;
+        int infoY = offsetY + viewRows * tileSize;
 
-        g2.setColor(new Color(30, 30, 50, 220));
+        g2.setColor(INFO_BAR);
         g2.fillRect(offsetX, infoY, gameWidth, 40);
 
         g2.setColor(Color.WHITE);
-        g2.setFont(new Font("Arial", Font.BOLD, Math.max(14, tileSize/3)));
+        g2.setFont(infoFont);
 
         String playerInfo = state.playerName() + " | Бомбы: " + state.selfBombs();
         String gameInfo = "Игроков онлайн: " + state.players().size();
@@ -225,17 +378,12 @@ public class GamePanel extends JPanel {
         int gameInfoWidth = fm.stringWidth(gameInfo);
         g2.drawString(gameInfo, offsetX + gameWidth - gameInfoWidth - 10, infoY + 25);
 
-        g2.setColor(new Color(255, 255, 255, 50));
+        g2.setColor(DIVIDER);
         g2.drawLine(offsetX, infoY, offsetX + gameWidth, infoY);
-
-        if (tileSize > 30) {
-            g2.setFont(new Font("Arial", Font.PLAIN, Math.max(10, tileSize/5)));
-            g2.setColor(new Color(255, 255, 255, 150));
-        }
     }
 
     private void drawGameOver(Graphics2D g2, GameState state) {
-        g2.setColor(new Color(0, 0, 0, 200));
+        g2.setColor(OVERLAY);
         g2.fillRect(0, 0, getWidth(), getHeight());
 
         g2.setColor(Color.WHITE);
@@ -264,14 +412,14 @@ public class GamePanel extends JPanel {
         }
 
         g2.setFont(new Font("Arial", Font.PLAIN, Math.max(16, getWidth()/50)));
-        g2.setColor(new Color(255, 255, 255, 150));
+        g2.setColor(HINT);
         String hint = "Закройте окно для возврата в меню";
         int hintW = g2.getFontMetrics().stringWidth(hint);
         g2.drawString(hint, (getWidth() - hintW) / 2, getHeight() / 2 + 80);
     }
 
     private void drawConnectionLost(Graphics2D g2) {
-        g2.setColor(new Color(0, 0, 0, 200));
+        g2.setColor(OVERLAY);
         g2.fillRect(0, 0, getWidth(), getHeight());
         g2.setColor(Color.WHITE);
         g2.setFont(new Font("Arial", Font.BOLD, Math.max(36, getWidth()/20)));
@@ -3,6 +3,8 @@ package ru.kpfu.itis.ui;
 import ru.kpfu.itis.net.GameClient;
 
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import java.awt.BorderLayout;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
@@ -28,6 +30,16 @@ public class GameWindow extends JFrame {
         panel = new GamePanel(client);
         add(panel, BorderLayout.CENTER);
 
+        client.setListener(new GameClient.Listener() {
+            @Override
+            public void onConnectionLost() {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                        "Соединение с сервером разорвано",
+                        "Ошибка соединения",
+                        JOptionPane.ERROR_MESSAGE));
+            }
+        });
+
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
@@ -2,8 +2,12 @@ package ru.kpfu.itis.ui;
 
 import ru.kpfu.itis.net.GameClient;
 import ru.kpfu.itis.net.GameServer;
+import ru.kpfu.itis.net.MatchConfig;
+import ru.kpfu.itis.replay.Replay;
 
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
@@ -11,30 +15,35 @@ import javax.swing.JPanel;
 import javax.swing.JTextField;
 import java.awt.BorderLayout;
 import java.awt.GridLayout;
+import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.file.Path;
 
 public class LauncherFrame extends JFrame {
     private final JTextField nameField = new JTextField("Player");
     private final JTextField hostField = new JTextField("localhost");
     private final JTextField portField = new JTextField("5555");
+    private final JCheckBox eventModeBox = new JCheckBox("100 игроков, карта 101x101");
     private final JLabel statusLabel = new JLabel(" ");
 
     public LauncherFrame() {
         setTitle("Bomberman Launcher");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setSize(340, 200);
+        setSize(340, 270);
         setLocationRelativeTo(null);
         buildUi();
     }
 
     private void buildUi() {
-        JPanel form = new JPanel(new GridLayout(4, 2, 8, 8));
+        JPanel form = new JPanel(new GridLayout(6, 2, 8, 8));
         form.add(new JLabel("Имя:"));
         form.add(nameField);
         form.add(new JLabel("Хост:"));
         form.add(hostField);
         form.add(new JLabel("Порт:"));
         form.add(portField);
+        form.add(new JLabel("Режим:"));
+        form.add(eventModeBox);
 
         JButton hostButton = new JButton("Создать сервер");
         JButton joinButton = new JButton("Подключиться");
@@ -43,6 +52,11 @@ public class LauncherFrame extends JFrame {
         form.add(hostButton);
         form.add(joinButton);
 
+        JButton replayButton = new JButton("Смотреть повтор");
+        replayButton.addActionListener(e -> openReplay());
+        form.add(replayButton);
+        form.add(new JLabel());
+
         add(form, BorderLayout.CENTER);
         add(statusLabel, BorderLayout.SOUTH);
     }
@@ -51,8 +65,19 @@ public class LauncherFrame extends JFrame {
         try {
             int port = Integer.parseInt(portField.getText().trim());
             String name = nameField.getText().trim();
-            GameServer server = new GameServer(port);
+            MatchConfig config = eventModeBox.isSelected() ? MatchConfig.event() : MatchConfig.classic();
+            GameServer server = new GameServer(port, config);
             server.start();
+            try {
+                server.exposeMetrics(port + 1);
+            } catch (IOException metricsError) {
+                System.err.println("Метрики по HTTP недоступны: " + metricsError.getMessage());
+            }
+            try {
+                server.recordReplays(Path.of("replays"));
+            } catch (IOException replayError) {
+                System.err.println("Запись повторов отключена: " + replayError.getMessage());
+            }
             hostField.setText(InetAddress.getLocalHost().getHostAddress());
             Thread.sleep(100);
             connectAndOpen(name, "localhost", port);
@@ -72,6 +97,19 @@ public class LauncherFrame extends JFrame {
         }
     }
 
+    private void openReplay() {
+        JFileChooser chooser = new JFileChooser(Path.of("replays").toFile());
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        try {
+            Replay replay = Replay.load(chooser.getSelectedFile().toPath());
+            ReplayWindow window = new ReplayWindow(replay);
+            window.setVisible(true);
+            setVisible(false);
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     private void connectAndOpen(String name, String host, int port) throws Exception {
         statusLabel.setText("Подключение...");
         GameClient client = new GameClient(host, port, name);
@@ -0,0 +1,82 @@
+package ru.kpfu.itis.ui;
+
+import ru.kpfu.itis.replay.Replay;
+import ru.kpfu.itis.replay.ReplayPlayer;
+
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.Timer;
+import java.awt.BorderLayout;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+public class ReplayWindow extends JFrame {
+    private final ReplayPlayer player;
+    private final JSlider slider;
+    private final JLabel tickLabel = new JLabel();
+    private final JButton playButton = new JButton("Пауза");
+    private final Timer uiTimer;
+    private boolean syncing;
+
+    public ReplayWindow(Replay replay) {
+        this.player = new ReplayPlayer(replay);
+        setTitle("Bomberman — повтор");
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        setSize(800, 680);
+        setLocationRelativeTo(null);
+        setLayout(new BorderLayout());
+
+        add(new GamePanel(player, null), BorderLayout.CENTER);
+
+        slider = new JSlider(0, (int) replay.endTick(), 0);
+        slider.addChangeListener(e -> {
+            if (!syncing) player.seek(slider.getValue());
+        });
+
+        JComboBox<ReplayPlayer.Speed> speedBox = new JComboBox<>(ReplayPlayer.Speed.values());
+        speedBox.addActionListener(e -> player.setSpeed((ReplayPlayer.Speed) speedBox.getSelectedItem()));
+
+        playButton.addActionListener(e -> {
+            if (player.isPlaying()) player.pause();
+            else player.play();
+            sync();
+        });
+
+        JPanel controls = new JPanel(new BorderLayout(8, 0));
+        JPanel buttons = new JPanel();
+        buttons.add(playButton);
+        buttons.add(speedBox);
+        controls.add(buttons, BorderLayout.WEST);
+        controls.add(slider, BorderLayout.CENTER);
+        controls.add(tickLabel, BorderLayout.EAST);
+        add(controls, BorderLayout.SOUTH);
+
+        uiTimer = new Timer(100, e -> sync());
+        uiTimer.start();
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                uiTimer.stop();
+                player.close();
+                dispose();
+                LauncherFrame launcher = new LauncherFrame();
+                launcher.setVisible(true);
+            }
+        });
+
+        player.play();
+    }
+
+    private void sync() {
+        syncing = true;
+        slider.setValue((int) player.tick());
+        syncing = false;
+        playButton.setText(player.isPlaying() ? "Пауза" : "Играть");
+        tickLabel.setText(player.tick() + " / " + player.endTick());
+    }
+}
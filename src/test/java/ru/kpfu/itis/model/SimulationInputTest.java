@@ -0,0 +1,109 @@
+package ru.kpfu.itis.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationInputTest {
+    private Simulation sim;
+    private World world;
+    private int id;
+
+    @BeforeEach
+    void setUp() {
+        sim = new Simulation(15, 13, 4, 5);
+        world = sim.world();
+        id = sim.addPlayer("first");
+        sim.addPlayer("second");
+        sim.run(Simulation.MOVE_COOLDOWN);
+    }
+
+    private int self() {
+        return world.indexOf(id);
+    }
+
+    private int openDirection() {
+        int x = world.x(self());
+        int y = world.y(self());
+        if (sim.cellAt(x + 1, y) == '.') return World.RIGHT;
+        if (sim.cellAt(x - 1, y) == '.') return World.LEFT;
+        if (sim.cellAt(x, y + 1) == '.') return World.DOWN;
+        return World.UP;
+    }
+
+    @Test
+    void bombPressedBetweenTicksIsAppliedExactlyOnce() {
+        int bombs = world.bombsAvailable(self());
+        assertTrue(sim.postInput(id, World.BOMB, 1, 1));
+        assertTrue(sim.postInput(id, 0, 2, 1));
+        sim.step();
+        assertEquals(1, world.bombCount());
+        assertEquals(bombs - 1, world.bombsAvailable(self()));
+        for (int i = 0; i < 10; i++) {
+            sim.step();
+        }
+        assertEquals(1, world.bombCount());
+        assertEquals(bombs - 1, world.bombsAvailable(self()));
+    }
+
+    @Test
+    void directionTappedBetweenTicksStillMoves() {
+        int x = world.x(self());
+        int y = world.y(self());
+        sim.postInput(id, openDirection(), 1, 1);
+        sim.postInput(id, 0, 2, 1);
+        sim.step();
+        assertEquals(1, Math.abs(world.x(self()) - x) + Math.abs(world.y(self()) - y));
+        int movedX = world.x(self());
+        int movedY = world.y(self());
+        for (int i = 0; i < 5; i++) {
+            sim.step();
+        }
+        assertEquals(movedX, world.x(self()));
+        assertEquals(movedY, world.y(self()));
+    }
+
+    @Test
+    void inputsOfOneTickApplyInSequenceOrder() {
+        int x = world.x(self());
+        int y = world.y(self());
+        sim.postInput(id, World.BOMB, 1, 1);
+        sim.postInput(id, openDirection(), 2, 1);
+        sim.step();
+        assertEquals(1, world.bombCount());
+        assertEquals(sim.cell(x, y), world.bombCell(0));
+        assertNotEquals(sim.cell(x, y), sim.cell(world.x(self()), world.y(self())));
+    }
+
+    @Test
+    void staleSequenceNumbersAreRejected() {
+        assertTrue(sim.postInput(id, World.RIGHT, 5, 1));
+        assertFalse(sim.postInput(id, World.LEFT, 5, 1));
+        assertFalse(sim.postInput(id, World.LEFT, 3, 1));
+        assertTrue(sim.postInput(id, World.LEFT, 0, 0));
+    }
+
+    @Test
+    void echoedInputTickFollowsTheLastAppliedInput() {
+        sim.postInput(id, openDirection(), 1, 100);
+        sim.step();
+        assertEquals(100, world.inputTick(self()));
+        sim.step();
+        sim.step();
+        assertEquals(102, world.inputTick(self()));
+        sim.postInput(id, 0, 2, 103);
+        for (int i = 0; i < 4; i++) {
+            sim.step();
+        }
+        assertEquals(103, world.inputTick(self()));
+    }
+
+    @Test
+    void echoedInputTickIsNotTruncated() {
+        int stamp = Integer.MAX_VALUE - 1;
+        sim.postInput(id, 0, 1, stamp);
+        sim.step();
+        assertEquals(stamp, world.inputTick(self()));
+    }
+}
@@ -0,0 +1,138 @@
+package ru.kpfu.itis.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationTest {
+    private static final int SIDE = 31;
+    private static final int PLAYERS = 4;
+    private static final int[] MOVES = {World.UP, World.DOWN, World.LEFT, World.RIGHT, 0};
+
+    private static Simulation start(long seed) {
+        Simulation sim = new Simulation(SIDE, SIDE, PLAYERS, seed);
+        for (int i = 0; i < PLAYERS; i++) {
+            sim.addPlayer("игрок" + i);
+        }
+        return sim;
+    }
+
+    private static void drive(Random inputs, Simulation... sims) {
+        for (int id = 1; id <= PLAYERS; id++) {
+            if (inputs.nextInt(3) != 0) continue;
+            int flags = MOVES[inputs.nextInt(MOVES.length)] | (inputs.nextInt(50) == 0 ? World.BOMB : 0);
+            for (Simulation sim : sims) {
+                sim.postInput(id, flags);
+            }
+        }
+        for (Simulation sim : sims) {
+            sim.step();
+        }
+    }
+
+    private static void assertSameGrid(Simulation expected, Simulation actual) {
+        for (int y = 0; y < SIDE; y++) {
+            assertArrayEquals(expected.row(y), actual.row(y), "строка " + y);
+        }
+    }
+
+    @Test
+    void sameSeedAndInputsGiveSameStateEveryTick() {
+        Simulation first = start(17);
+        Simulation second = start(17);
+        assertSameGrid(first, second);
+        Random inputs = new Random(3);
+        for (int t = 0; t < 1000 && !first.isGameOver(); t++) {
+            drive(inputs, first, second);
+            assertEquals(first.stateHash(), second.stateHash(), "тик " + first.tick());
+        }
+        assertTrue(first.clearedCount() > 0, "ни один блок не разрушен");
+        assertSameGrid(first, second);
+        assertEquals(first.isGameOver(), second.isGameOver());
+        assertEquals(first.winnerId(), second.winnerId());
+    }
+
+    @Test
+    void differentSeedsGiveDifferentMaps() {
+        Simulation first = start(1);
+        Simulation second = start(2);
+        boolean differs = false;
+        for (int y = 0; y < SIDE && !differs; y++) {
+            differs = !Arrays.equals(first.row(y), second.row(y));
+        }
+        assertTrue(differs);
+    }
+
+    @Test
+    void restoredStateContinuesIdentically() {
+        Simulation original = start(23);
+        Random inputs = new Random(9);
+        for (int t = 0; t < 300 && !original.isGameOver(); t++) {
+            drive(inputs, original);
+        }
+        ByteBuffer state = ByteBuffer.allocate(original.stateSize());
+        original.writeState(state);
+        state.flip();
+
+        Simulation restored = new Simulation(SIDE, SIDE, PLAYERS, 23);
+        restored.restoreState(state);
+        assertEquals(original.tick(), restored.tick());
+        assertEquals(original.stateHash(), restored.stateHash());
+        assertSameGrid(original, restored);
+
+        for (int t = 0; t < 300 && !original.isGameOver(); t++) {
+            drive(inputs, original, restored);
+            assertEquals(original.stateHash(), restored.stateHash(), "тик " + original.tick());
+        }
+    }
+
+    @Test
+    void steadyTicksDoNotAllocate() {
+        Simulation sim = new Simulation(41, 41, 8, 11);
+        for (int i = 0; i < 8; i++) {
+            sim.addPlayer("игрок" + i);
+        }
+        Random random = new Random(2);
+        int[] flags = new int[8 * 4000];
+        for (int i = 0; i < flags.length; i++) {
+            flags[i] = MOVES[random.nextInt(MOVES.length)] | (random.nextInt(150) == 0 ? World.BOMB : 0);
+        }
+        int next = 0;
+        for (int t = 0; t < 300; t++) {
+            for (int id = 1; id <= 8; id++) {
+                sim.postInput(id, flags[next++]);
+            }
+            sim.step();
+        }
+        int cleared = sim.clearedCount();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        int ticks = 0;
+        while (ticks < 3000 && !sim.isGameOver()) {
+            for (int id = 1; id <= 8; id++) {
+                sim.postInput(id, flags[next++]);
+            }
+            sim.step();
+            ticks++;
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(ticks >= 300, "тиков: " + ticks);
+        assertTrue(sim.clearedCount() > cleared, "взрывов не было");
+        assertTrue(allocated < 4096, "выделено " + allocated + " байт за " + ticks + " тиков");
+    }
+
+    @Test
+    void stateHashTracksEveryTick() {
+        Simulation sim = start(5);
+        long before = sim.stateHash();
+        sim.step();
+        assertNotEquals(before, sim.stateHash());
+    }
+}
@@ -0,0 +1,74 @@
+package ru.kpfu.itis.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorldTest {
+    private static World world(int players) {
+        World world = new World(41, 41, players);
+        for (int id = 1; id <= players; id++) {
+            world.addPlayer(id, "p" + id, id, 2 * id, id % 3);
+        }
+        return world;
+    }
+
+    @Test
+    void swapRemoveKeepsIndexConsistent() {
+        World world = world(6);
+        assertTrue(world.removePlayer(2));
+        assertTrue(world.removePlayer(6));
+        assertFalse(world.removePlayer(6));
+        assertEquals(4, world.playerCount());
+        assertEquals(-1, world.indexOf(2));
+        assertEquals(-1, world.indexOf(6));
+        for (int id : new int[]{1, 3, 4, 5}) {
+            int i = world.indexOf(id);
+            assertTrue(i >= 0 && i < world.playerCount());
+            assertEquals(id, world.playerId(i));
+            assertEquals("p" + id, world.name(i));
+            assertEquals(id, world.x(i));
+            assertEquals(2 * id, world.y(i));
+            assertEquals(id % 3, world.bombsAvailable(i));
+        }
+    }
+
+    @Test
+    void idsAreRecycledWithinCapacity() {
+        World world = world(4);
+        assertEquals(-1, world.freeId());
+        world.removePlayer(3);
+        assertEquals(3, world.freeId());
+        world.addPlayer(3, "new", 5, 5, 1);
+        assertEquals("new", world.name(world.indexOf(3)));
+        assertThrows(IllegalArgumentException.class, () -> world.addPlayer(5, "extra", 1, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> world.addPlayer(1, "twice", 1, 1, 1));
+    }
+
+    @Test
+    void simulationNeverHandsOutIdsAboveCapacity() {
+        Simulation sim = new Simulation(15, 13, 4, 1);
+        for (int round = 0; round < 50; round++) {
+            while (sim.canJoin()) {
+                int id = sim.addPlayer("bot");
+                assertTrue(id >= 1 && id <= 4);
+            }
+            sim.removePlayer(1 + round % 4);
+        }
+        assertEquals(3, sim.world().playerCount());
+    }
+
+    @Test
+    void bombPressSurvivesLaterJoins() {
+        World world = new World(101, 101, 64);
+        for (int id = 1; id <= 20; id++) {
+            world.addPlayer(id, "p" + id, 1, 1, 1);
+        }
+        assertTrue(world.postInput(1, World.BOMB, 1, 1));
+        for (int id = 21; id <= 64; id++) {
+            world.addPlayer(id, "p" + id, 1, 1, 1);
+        }
+        assertTrue(world.nextInput(world.indexOf(1), 1));
+        assertEquals(World.BOMB, world.lastInput(world.indexOf(1)));
+    }
+}
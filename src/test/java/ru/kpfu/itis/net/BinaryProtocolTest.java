@@ -0,0 +1,116 @@
+package ru.kpfu.itis.net;
+
+import org.junit.jupiter.api.Test;
+import ru.kpfu.itis.model.Bomb;
+import ru.kpfu.itis.model.Explosion;
+import ru.kpfu.itis.model.Player;
+import ru.kpfu.itis.net.message.*;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryProtocolTest {
+    private static final String GRID = "......./.#.#.#./......./.#.#.#./......./.#.#.#./.......";
+
+    private static ByteBuffer body(MessageType type, int... varInts) {
+        ByteBuffer out = ByteBuffer.allocate(16 + varInts.length * 5);
+        out.put((byte) type.ordinal());
+        for (int value : varInts) {
+            BinaryProtocol.writeVarInt(out, value);
+        }
+        return out.flip();
+    }
+
+    private static ByteBuffer frameBody(Message message) {
+        ByteBuffer packet = BinaryProtocol.encode(message);
+        while ((packet.get() & 0x80) != 0) {
+        }
+        return packet.slice();
+    }
+
+    private static StateMessage state() {
+        return new StateMessage(42, Map.of(1, new Player(1, "игрок", 2, 3, true, 1, 7)),
+                List.of(new Bomb(1, 2, 2, 30)), List.of(new Explosion(4, 4, 5)), GRID);
+    }
+
+    @Test
+    void decodesValidState() {
+        StateMessage decoded = (StateMessage) BinaryProtocol.decode(frameBody(state()));
+        assertNotNull(decoded);
+        assertEquals(42, decoded.tick());
+        assertEquals(state().players(), decoded.players());
+        assertEquals(GRID, decoded.grid());
+    }
+
+    @Test
+    void decodesPartialGridWithRowOffset() {
+        StateMessage view = new StateMessage(42, Map.of(), List.of(), List.of(), "......./.#.#.#.", 3);
+        StateMessage decoded = (StateMessage) BinaryProtocol.decode(frameBody(view));
+        assertNotNull(decoded);
+        assertEquals(view.grid(), decoded.grid());
+        assertEquals(3, decoded.gridTop());
+        StateMessage parsed = (StateMessage) Protocol.parse(view.serialize());
+        assertEquals(view.grid(), parsed.grid());
+        assertEquals(3, parsed.gridTop());
+    }
+
+    @Test
+    void helloCarriesServerTimeRequest() {
+        HelloMessage plain = (HelloMessage) BinaryProtocol.decode(frameBody(new HelloMessage("бот", WireFormat.BINARY)));
+        assertFalse(plain.serverTime());
+        HelloMessage hello = new HelloMessage("бот", WireFormat.BINARY, true);
+        assertTrue(((HelloMessage) BinaryProtocol.decode(frameBody(hello))).serverTime());
+        HelloMessage parsed = (HelloMessage) Protocol.parse(hello.serialize());
+        assertTrue(parsed.serverTime());
+        assertEquals(WireFormat.BINARY, parsed.format());
+    }
+
+    @Test
+    void rejectsGridWithZeroHeight() {
+        assertNull(BinaryProtocol.decode(body(MessageType.STATE, 1, 0, 0, 0, 15, 0)));
+    }
+
+    @Test
+    void rejectsGridSidesOutsideMatchLimits() {
+        assertNull(BinaryProtocol.decode(body(MessageType.STATE, 1, 0, 0, 0, 3, 7, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0)));
+        assertNull(BinaryProtocol.decode(body(MessageType.STATE, 1, 0, 0, 0, 7, MatchConfig.MAX_SIDE + 1)));
+        assertNull(BinaryProtocol.decode(body(MessageType.WELCOME, 1, MatchConfig.MAX_SIDE + 1, 7, 0)));
+        assertNull(BinaryProtocol.decode(body(MessageType.WELCOME, 1, 7, MatchConfig.MIN_SIDE - 1, 0)));
+    }
+
+    @Test
+    void rejectsNegativeStringLength() {
+        assertNull(BinaryProtocol.decode(body(MessageType.HELLO, -1)));
+        assertNull(BinaryProtocol.decode(body(MessageType.GAME_OVER, 1, -1)));
+    }
+
+    @Test
+    void rejectsHugeCounts() {
+        assertNull(BinaryProtocol.decode(body(MessageType.STATE, 1, Integer.MAX_VALUE)));
+        assertNull(BinaryProtocol.decode(body(MessageType.STATE, 1, 0, Integer.MAX_VALUE)));
+        assertNull(BinaryProtocol.decode(body(MessageType.STATE, 1, -5)));
+        assertNull(BinaryProtocol.decode(body(MessageType.DELTA, 2, 1, Integer.MAX_VALUE)));
+        assertNull(BinaryProtocol.decode(body(MessageType.DELTA, 2, 1, 0, 0, Integer.MAX_VALUE)));
+        assertNull(BinaryProtocol.decode(body(MessageType.DELTA, 2, 1, 0, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    void neverThrowsOnCorruptedFrames() {
+        byte[] valid = new byte[frameBody(state()).remaining()];
+        frameBody(state()).get(valid);
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            byte[] corrupt = valid.clone();
+            int flips = 1 + random.nextInt(4);
+            for (int k = 0; k < flips; k++) {
+                corrupt[random.nextInt(corrupt.length)] = (byte) random.nextInt(256);
+            }
+            int length = random.nextInt(corrupt.length + 1);
+            assertDoesNotThrow(() -> BinaryProtocol.decode(ByteBuffer.wrap(corrupt, 0, length)));
+        }
+    }
+}
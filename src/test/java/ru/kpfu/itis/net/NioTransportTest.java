@@ -0,0 +1,118 @@
+package ru.kpfu.itis.net;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NioTransportTest {
+    private NioTransport transport;
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static Connection.Listener echo(Connection connection) {
+        return new Connection.Listener() {
+            @Override
+            public void onFrame(ByteBuffer frame) {
+                String line = StandardCharsets.UTF_8.decode(frame).toString();
+                if (line.equals("boom")) throw new IllegalStateException("плохой кадр");
+                connection.send(Protocol.frame(line));
+            }
+
+            @Override
+            public void onClose() {
+            }
+        };
+    }
+
+    private int start(Function<Connection, Connection.Listener> listenerFactory) throws IOException {
+        int port = freePort();
+        transport = new NioTransport(port, 1, listenerFactory);
+        transport.start();
+        return port;
+    }
+
+    private static Socket connect(int port) throws IOException {
+        Socket socket = new Socket("localhost", port);
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static String roundTrip(Socket socket, BufferedReader reader, String line) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        return reader.readLine();
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void stop() {
+        if (transport != null) transport.stop();
+    }
+
+    @Test
+    void listenerFailureClosesOnlyOffendingConnection() throws IOException {
+        int port = start(NioTransportTest::echo);
+        try (Socket good = connect(port); Socket bad = connect(port)) {
+            BufferedReader goodIn = reader(good);
+            BufferedReader badIn = reader(bad);
+            assertEquals("привет", roundTrip(good, goodIn, "привет"));
+            assertEquals("привет", roundTrip(bad, badIn, "привет"));
+
+            assertNull(roundTrip(bad, badIn, "boom"));
+            assertEquals("ещё", roundTrip(good, goodIn, "ещё"));
+
+            try (Socket late = connect(port)) {
+                assertEquals("новый", roundTrip(late, reader(late), "новый"));
+            }
+        }
+        assertTrue(transport.ioErrors() > 0);
+    }
+
+    @Test
+    void nonReadingPeerIsDisconnected() throws Exception {
+        BlockingQueue<Connection> accepted = new LinkedBlockingQueue<>();
+        int port = start(connection -> {
+            accepted.add(connection);
+            return echo(connection);
+        });
+        try (Socket idle = new Socket()) {
+            idle.setReceiveBufferSize(4096);
+            idle.connect(new InetSocketAddress("localhost", port));
+            Connection connection = accepted.poll(5, TimeUnit.SECONDS);
+            assertNotNull(connection);
+
+            ByteBuffer state = ByteBuffer.allocate(64 * 1024);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (connection.isOpen() && System.nanoTime() < deadline) {
+                connection.sendLatest(state.duplicate());
+                Thread.sleep(20);
+            }
+            assertFalse(connection.isOpen());
+            assertEquals(1, transport.slowDisconnects());
+            assertEquals(0, transport.connectionCount());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.kpfu.itis.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundQueueTest {
+    private static ByteBuffer frame(int size) {
+        return ByteBuffer.allocate(size);
+    }
+
+    private static List<ByteBuffer> drain(OutboundQueue queue) {
+        List<ByteBuffer> sent = new ArrayList<>();
+        ByteBuffer head;
+        while ((head = queue.head()) != null) {
+            sent.add(head);
+            queue.completeHead();
+        }
+        return sent;
+    }
+
+    @Test
+    void newerStateReplacesQueuedState() {
+        OutboundQueue queue = new OutboundQueue("test");
+        ByteBuffer reliable = frame(10);
+        ByteBuffer stale = frame(100);
+        ByteBuffer fresh = frame(120);
+        assertTrue(queue.offer(reliable, false));
+        assertTrue(queue.offer(stale, true));
+        assertTrue(queue.offer(fresh, true));
+
+        assertEquals(2, queue.depth());
+        assertEquals(130, queue.queuedBytes());
+        assertEquals(1, queue.dropped());
+        List<ByteBuffer> sent = drain(queue);
+        assertEquals(2, sent.size());
+        assertSame(reliable, sent.get(0));
+        assertSame(fresh, sent.get(1));
+        assertEquals(0, queue.queuedBytes());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void stateAlreadyInFlightIsNotReplaced() {
+        OutboundQueue queue = new OutboundQueue("test");
+        ByteBuffer first = frame(50);
+        ByteBuffer second = frame(60);
+        assertTrue(queue.offer(first, true));
+        assertSame(first, queue.head());
+        assertTrue(queue.offer(second, true));
+
+        assertEquals(0, queue.dropped());
+        assertEquals(2, queue.depth());
+        queue.completeHead();
+        assertSame(second, queue.head());
+    }
+
+    @Test
+    void stateOverBudgetIsDroppedAndReliableOverLimitIsRejected() {
+        OutboundQueue queue = new OutboundQueue("test");
+        assertTrue(queue.offer(frame(200 * 1024), false));
+        assertTrue(queue.offer(frame(100 * 1024), true));
+        assertEquals(1, queue.depth());
+        assertEquals(1, queue.dropped());
+
+        assertTrue(queue.offer(frame(3 * 1024 * 1024), false));
+        assertFalse(queue.offer(frame(1024 * 1024), false));
+        assertEquals(2, queue.depth());
+    }
+
+    @Test
+    void stallIsReportedUntilQueueDrains() throws InterruptedException {
+        OutboundQueue queue = new OutboundQueue("test", TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(queue.offer(frame(10), true));
+        assertTrue(queue.offer(frame(10), true));
+        assertEquals(1, queue.dropped());
+        Thread.sleep(5);
+        assertTrue(queue.isOverBudget());
+        assertTrue(queue.isOverBudget());
+
+        drain(queue);
+        assertFalse(queue.isOverBudget());
+        assertTrue(queue.offer(frame(10), true));
+        Thread.sleep(5);
+        assertFalse(queue.isOverBudget());
+    }
+}
@@ -0,0 +1,101 @@
+package ru.kpfu.itis.net;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.kpfu.itis.model.GameState;
+import ru.kpfu.itis.model.Player;
+import ru.kpfu.itis.model.World;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PredictionTest {
+    private static final int SELF = 1;
+    private static final String[] MAP = {
+            ".......",
+            ".......",
+            "...#...",
+            ".......",
+    };
+
+    private Prediction prediction;
+    private GameState state;
+
+    @BeforeEach
+    void setUp() {
+        char[][] grid = new char[MAP.length][];
+        for (int y = 0; y < MAP.length; y++) {
+            grid[y] = MAP[y].toCharArray();
+        }
+        prediction = new Prediction();
+        state = new GameState(MAP[0].length(), MAP.length, grid, SELF, "игрок");
+    }
+
+    private GameState server(int x, int y, int inputTick) {
+        Player self = new Player(SELF, "игрок", x, y, true, 1, inputTick);
+        return state.withEntities(Map.of(SELF, self), List.of(), List.of());
+    }
+
+    private GameState reconcile(long tick, int x, int y, int inputTick) {
+        GameState next = server(x, y, inputTick);
+        return prediction.reconcile(next, next.players().get(SELF), tick);
+    }
+
+    private static void assertAt(GameState state, int x, int y) {
+        Player self = state.players().get(SELF);
+        assertEquals(x, self.x(), "x");
+        assertEquals(y, self.y(), "y");
+    }
+
+    @Test
+    void movesLocallyBeforeServerConfirms() {
+        GameState current = reconcile(10, 1, 1, 0);
+        current = prediction.tick(current, 1, World.RIGHT);
+        assertAt(current, 2, 1);
+        current = prediction.tick(current, 2, World.RIGHT);
+        assertAt(current, 2, 1);
+        current = prediction.tick(current, 3, World.RIGHT);
+        assertAt(current, 3, 1);
+    }
+
+    @Test
+    void replaysInputsTheServerHasNotApplied() {
+        GameState current = reconcile(10, 1, 1, 0);
+        current = prediction.tick(current, 1, World.RIGHT);
+        current = prediction.tick(current, 2, 0);
+        current = prediction.tick(current, 3, World.RIGHT);
+        assertAt(current, 3, 1);
+
+        current = reconcile(11, 2, 1, 1);
+        assertAt(current, 3, 1);
+        current = reconcile(13, 3, 1, 3);
+        assertAt(current, 3, 1);
+    }
+
+    @Test
+    void serverPositionWinsOnceInputsAreAcknowledged() {
+        GameState current = reconcile(10, 1, 1, 0);
+        current = prediction.tick(current, 1, World.RIGHT);
+        assertAt(current, 2, 1);
+
+        current = reconcile(11, 1, 1, 1);
+        assertAt(current, 1, 1);
+    }
+
+    @Test
+    void doesNotPredictIntoWalls() {
+        GameState current = reconcile(10, 3, 1, 0);
+        current = prediction.tick(current, 1, World.DOWN);
+        assertAt(current, 3, 1);
+    }
+
+    @Test
+    void stopsPredictingAfterDeath() {
+        reconcile(10, 1, 1, 0);
+        GameState dead = state.withEntities(Map.of(SELF, new Player(SELF, "игрок", 1, 1, false, 0, 0)), List.of(), List.of());
+        assertSame(dead, prediction.reconcile(dead, dead.players().get(SELF), 11));
+        assertSame(dead, prediction.tick(dead, 1, World.RIGHT));
+    }
+}
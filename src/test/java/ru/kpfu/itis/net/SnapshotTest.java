@@ -0,0 +1,141 @@
+package ru.kpfu.itis.net;
+
+import org.junit.jupiter.api.Test;
+import ru.kpfu.itis.model.Bomb;
+import ru.kpfu.itis.model.Explosion;
+import ru.kpfu.itis.model.Player;
+import ru.kpfu.itis.net.message.DeltaStateMessage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotTest {
+    private static final int SIDE = 15;
+
+    private static Snapshot snapshot(long tick, Map<Integer, Player> players, Map<Integer, Bomb> bombs,
+                                     Map<Integer, Explosion> fire) {
+        return new Snapshot(tick, SIDE, new HashMap<>(players), bombs.values(), fire.values(), 0);
+    }
+
+    private static void assertSameSnapshot(Snapshot expected, Snapshot actual) {
+        assertEquals(expected.tick(), actual.tick());
+        assertEquals(expected.players(), actual.players());
+        assertEquals(new HashSet<>(expected.bombs()), new HashSet<>(actual.bombs()));
+        assertEquals(new HashSet<>(expected.explosions()), new HashSet<>(actual.explosions()));
+    }
+
+    private static DeltaStateMessage viaBinary(DeltaStateMessage delta) {
+        ByteBuffer packet = BinaryProtocol.encode(delta);
+        BinaryProtocol.readVarInt(packet);
+        return (DeltaStateMessage) BinaryProtocol.decode(packet);
+    }
+
+    private static DeltaStateMessage viaText(DeltaStateMessage delta) {
+        return (DeltaStateMessage) Protocol.parse(delta.serialize());
+    }
+
+    @Test
+    void appliedDeltaEqualsFullSnapshot() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            long baseTick = 1 + random.nextInt(1000);
+            long tick = baseTick + 1 + random.nextInt(5);
+            int elapsed = (int) (tick - baseTick);
+
+            Map<Integer, Player> basePlayers = new HashMap<>();
+            Map<Integer, Player> players = new HashMap<>();
+            for (int id = 1; id <= 8; id++) {
+                int x = random.nextInt(SIDE);
+                int y = random.nextInt(SIDE);
+                Player old = new Player(id, "игрок" + id, x, y, true, 1, id);
+                switch (random.nextInt(4)) {
+                    case 0 -> basePlayers.put(id, old);
+                    case 1 -> players.put(id, old);
+                    case 2 -> {
+                        basePlayers.put(id, old);
+                        players.put(id, old);
+                    }
+                    default -> {
+                        basePlayers.put(id, old);
+                        players.put(id, new Player(id, "игрок" + id, (x + 1) % SIDE, y, random.nextBoolean(),
+                                random.nextInt(3), id + elapsed));
+                    }
+                }
+            }
+
+            Map<Integer, Bomb> baseBombs = new HashMap<>();
+            Map<Integer, Bomb> bombs = new HashMap<>();
+            Map<Integer, Explosion> baseFire = new HashMap<>();
+            Map<Integer, Explosion> fire = new HashMap<>();
+            for (int cell = 0; cell < SIDE * SIDE; cell++) {
+                int x = cell % SIDE;
+                int y = cell / SIDE;
+                int timer = 1 + random.nextInt(40);
+                switch (random.nextInt(12)) {
+                    case 0 -> baseBombs.put(cell, new Bomb(1, x, y, timer));
+                    case 1 -> bombs.put(cell, new Bomb(2, x, y, timer));
+                    case 2 -> {
+                        baseBombs.put(cell, new Bomb(3, x, y, timer + elapsed));
+                        bombs.put(cell, new Bomb(3, x, y, timer));
+                    }
+                    case 3 -> {
+                        baseBombs.put(cell, new Bomb(3, x, y, timer));
+                        bombs.put(cell, new Bomb(4, x, y, timer + 1));
+                    }
+                    case 4 -> baseFire.put(cell, new Explosion(x, y, timer));
+                    case 5 -> fire.put(cell, new Explosion(x, y, timer));
+                    case 6 -> {
+                        baseFire.put(cell, new Explosion(x, y, timer + elapsed));
+                        fire.put(cell, new Explosion(x, y, timer));
+                    }
+                    case 7 -> {
+                        baseFire.put(cell, new Explosion(x, y, timer));
+                        fire.put(cell, new Explosion(x, y, timer + elapsed));
+                    }
+                    default -> {
+                    }
+                }
+            }
+
+            Snapshot base = snapshot(baseTick, basePlayers, baseBombs, baseFire);
+            Snapshot next = snapshot(tick, players, bombs, fire);
+            DeltaStateMessage delta = next.deltaFrom(base, new int[0]);
+
+            assertSameSnapshot(next, base.apply(delta));
+            assertSameSnapshot(next, base.apply(viaBinary(delta)));
+            assertSameSnapshot(next, base.apply(viaText(delta)));
+        }
+    }
+
+    @Test
+    void unchangedStateProducesEmptyDelta() {
+        Map<Integer, Player> players = Map.of(1, new Player(1, "игрок", 2, 3, true, 1, 5));
+        Map<Integer, Bomb> baseBombs = Map.of(SIDE + 1, new Bomb(1, 1, 1, 10));
+        Map<Integer, Bomb> bombs = Map.of(SIDE + 1, new Bomb(1, 1, 1, 7));
+        Map<Integer, Explosion> baseFire = Map.of(2, new Explosion(2, 0, 6));
+        Map<Integer, Explosion> fire = Map.of(2, new Explosion(2, 0, 3));
+
+        Snapshot base = snapshot(10, players, baseBombs, baseFire);
+        Snapshot next = snapshot(13, players, bombs, fire);
+        DeltaStateMessage delta = next.deltaFrom(base, new int[0]);
+
+        assertTrue(delta.isEmpty());
+        assertSameSnapshot(next, base.apply(delta));
+    }
+
+    @Test
+    void deltaCarriesOnlyCellsClearedSinceBase() {
+        int[] clearedLog = {3, SIDE + 4, 2 * SIDE + 5};
+        Snapshot base = new Snapshot(10, SIDE, new HashMap<>(), List.of(), List.of(), 1);
+        Snapshot next = new Snapshot(12, SIDE, new HashMap<>(), List.of(), List.of(), 3);
+
+        assertEquals(List.of(SIDE + 4, 2 * SIDE + 5), new ArrayList<>(next.deltaFrom(base, clearedLog).clearedCells()));
+    }
+}
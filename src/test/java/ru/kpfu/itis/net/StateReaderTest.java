@@ -0,0 +1,176 @@
+package ru.kpfu.itis.net;
+
+import org.junit.jupiter.api.Test;
+import ru.kpfu.itis.model.Bomb;
+import ru.kpfu.itis.model.Explosion;
+import ru.kpfu.itis.model.Player;
+import ru.kpfu.itis.net.message.DeltaStateMessage;
+import ru.kpfu.itis.net.message.Message;
+import ru.kpfu.itis.net.message.StateMessage;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateReaderTest {
+    private static final int SIDE = 7;
+    private static final String GRID = "......./.#*#.#./......./.#.#.#./......./.#.#.#./.......";
+    private static final String CLEARED_GRID = GRID.replace('*', '.');
+    private static final int CLEARED_CELL = SIDE + 2;
+
+    private static final Map<Integer, Player> BASE_PLAYERS = Map.of(
+            1, new Player(1, "первый", 0, 0, true, 1, 4),
+            2, new Player(2, "второй", 6, 6, true, 1, 3));
+    private static final List<Bomb> BASE_BOMBS = List.of(new Bomb(1, 2, 2, 30), new Bomb(2, 4, 6, 1));
+    private static final List<Explosion> BASE_FIRE = List.of(new Explosion(4, 4, 5), new Explosion(5, 4, 1));
+
+    private static final Map<Integer, Player> PLAYERS = Map.of(
+            1, new Player(1, "первый", 1, 0, true, 0, 6),
+            3, new Player(3, "третий", 0, 6, true, 1, 0));
+    private static final List<Bomb> BOMBS = List.of(new Bomb(1, 2, 2, 28), new Bomb(1, 0, 0, 40));
+    private static final List<Explosion> FIRE = List.of(new Explosion(4, 4, 3), new Explosion(6, 2, 5));
+
+    private static ByteBuffer binary(Message message) {
+        ByteBuffer packet = BinaryProtocol.encode(message);
+        BinaryProtocol.readVarInt(packet);
+        byte[] body = new byte[packet.remaining()];
+        packet.get(body);
+        return ByteBuffer.wrap(body);
+    }
+
+    private static ByteBuffer text(Message message) {
+        return ByteBuffer.wrap(message.serialize().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static DeltaStateMessage delta() {
+        Snapshot base = new Snapshot(10, SIDE, BASE_PLAYERS, BASE_BOMBS, BASE_FIRE, 0);
+        Snapshot next = new Snapshot(12, SIDE, PLAYERS, BOMBS, FIRE, 1);
+        return next.deltaFrom(base, new int[]{CLEARED_CELL});
+    }
+
+    private static StateReader reader() {
+        return new StateReader(SIDE, SIDE, new byte[SIDE * SIDE]);
+    }
+
+    private static void assertSameState(StateReader expected, StateReader actual) {
+        assertEquals(expected.tick(), actual.tick());
+        assertEquals(expected.players(), actual.players());
+        assertEquals(new HashSet<>(expected.bombs()), new HashSet<>(actual.bombs()));
+        assertEquals(new HashSet<>(expected.explosions()), new HashSet<>(actual.explosions()));
+        assertArrayEquals(expected.cells(), actual.cells());
+    }
+
+    @Test
+    void binaryDeltaMatchesFullState() {
+        StateReader full = reader();
+        assertTrue(full.read(binary(new StateMessage(12, PLAYERS, BOMBS, FIRE, CLEARED_GRID)), WireFormat.BINARY));
+
+        StateReader reader = reader();
+        assertTrue(reader.read(binary(new StateMessage(10, BASE_PLAYERS, BASE_BOMBS, BASE_FIRE, GRID)), WireFormat.BINARY));
+        assertTrue(reader.read(binary(delta()), WireFormat.BINARY));
+        assertTrue(reader.delta());
+        assertFalse(reader.missingBase());
+        assertTrue(reader.gridChanged());
+        assertTrue(reader.entitiesChanged());
+        assertSameState(full, reader);
+    }
+
+    @Test
+    void textDeltaMatchesFullState() {
+        StateReader full = reader();
+        assertTrue(full.read(text(new StateMessage(12, PLAYERS, BOMBS, FIRE, CLEARED_GRID)), WireFormat.TEXT));
+
+        StateReader reader = reader();
+        assertTrue(reader.read(text(new StateMessage(10, BASE_PLAYERS, BASE_BOMBS, BASE_FIRE, GRID)), WireFormat.TEXT));
+        assertTrue(reader.read(text(delta()), WireFormat.TEXT));
+        assertSameState(full, reader);
+    }
+
+    @Test
+    void deltaAgainstUnknownBaseAsksForFullState() {
+        StateReader reader = reader();
+        assertTrue(reader.read(binary(delta()), WireFormat.BINARY));
+        assertTrue(reader.missingBase());
+
+        assertTrue(reader.read(binary(new StateMessage(10, BASE_PLAYERS, BASE_BOMBS, BASE_FIRE, GRID)), WireFormat.BINARY));
+        assertFalse(reader.missingBase());
+        assertTrue(reader.read(binary(delta()), WireFormat.BINARY));
+        assertFalse(reader.missingBase());
+        assertEquals(12, reader.tick());
+    }
+
+    @Test
+    void serverTimeIsReadFromStampedFrames() {
+        long stamp = 1_760_000_000_123_456L;
+        for (WireFormat format : WireFormat.values()) {
+            StateReader reader = reader();
+            StateMessage full = new StateMessage(10, BASE_PLAYERS, BASE_BOMBS, BASE_FIRE, GRID);
+            assertTrue(reader.read(format == WireFormat.BINARY ? binary(full) : text(full), format));
+            assertEquals(0, reader.serverTime());
+
+            DeltaStateMessage delta = delta().stamped(stamp);
+            assertTrue(reader.read(format == WireFormat.BINARY ? binary(delta) : text(delta), format));
+            assertEquals(stamp, reader.serverTime(), format.name());
+
+            StateMessage gridless = new StateMessage(13, PLAYERS, BOMBS, FIRE, "").stamped(stamp + 1);
+            assertTrue(reader.read(format == WireFormat.BINARY ? binary(gridless) : text(gridless), format));
+            assertEquals(stamp + 1, reader.serverTime(), format.name());
+        }
+    }
+
+    @Test
+    void idleDeltasDoNotAllocate() {
+        StateReader reader = reader();
+        assertTrue(reader.read(binary(new StateMessage(1, BASE_PLAYERS, List.of(), List.of(), GRID)), WireFormat.BINARY));
+        Map<Integer, Player> players = reader.players();
+        int frames = 20000;
+        ByteBuffer[] deltas = new ByteBuffer[frames];
+        for (int i = 0; i < frames; i++) {
+            deltas[i] = binary(new DeltaStateMessage(i + 2, i + 1, List.of(), List.of(), List.of(), List.of(),
+                    List.of(), List.of(), List.of()));
+        }
+        for (int i = 0; i < frames / 2; i++) {
+            assertTrue(reader.read(deltas[i], WireFormat.BINARY));
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        boolean changed = false;
+        for (int i = frames / 2; i < frames; i++) {
+            reader.read(deltas[i], WireFormat.BINARY);
+            changed |= reader.gridChanged() || reader.entitiesChanged();
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertFalse(changed);
+        assertEquals(frames + 1, reader.tick());
+        assertSame(players, reader.players());
+        assertTrue(allocated < 1024, "выделено " + allocated + " байт");
+    }
+
+    @Test
+    void partialGridReplacesOnlyItsRows() {
+        String rows = "*.*.*.*/.......";
+        for (WireFormat format : WireFormat.values()) {
+            StateReader reader = reader();
+            StateMessage full = new StateMessage(10, BASE_PLAYERS, List.of(), List.of(), GRID);
+            assertTrue(reader.read(format == WireFormat.BINARY ? binary(full) : text(full), format));
+            byte[] before = reader.cells().clone();
+
+            StateMessage view = new StateMessage(11, BASE_PLAYERS, List.of(), List.of(), rows, 3);
+            assertTrue(reader.read(format == WireFormat.BINARY ? binary(view) : text(view), format));
+            assertTrue(reader.gridChanged());
+            byte[] cells = reader.cells();
+            for (int i = 0; i < cells.length; i++) {
+                int y = i / SIDE;
+                byte expected = y == 3 ? (byte) rows.charAt(i % SIDE) : y == 4 ? (byte) '.' : before[i];
+                assertEquals(expected, cells[i], format + " клетка " + i);
+            }
+        }
+    }
+}
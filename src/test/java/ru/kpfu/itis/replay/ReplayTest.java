@@ -0,0 +1,88 @@
+package ru.kpfu.itis.replay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.kpfu.itis.model.Simulation;
+import ru.kpfu.itis.model.World;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayTest {
+    private static final int SIDE = 41;
+    private static final int PLAYERS = 6;
+    private static final int TICKS = 1500;
+    private static final int[] MOVES = {World.UP, World.DOWN, World.LEFT, World.RIGHT, 0};
+
+    @TempDir
+    Path directory;
+
+    private long[] hashes;
+
+    private Replay record() throws IOException {
+        ReplayArchive archive = new ReplayArchive(directory);
+        Simulation sim = new Simulation(SIDE, SIDE, PLAYERS, 42);
+        ReplayRecorder recorder = archive.open(1, sim, PLAYERS);
+        sim.setInputListener(recorder);
+        for (int i = 0; i < PLAYERS; i++) {
+            recorder.join(sim.addPlayer("игрок" + i), "игрок" + i);
+        }
+        Random random = new Random(1);
+        hashes = new long[TICKS + 1];
+        hashes[0] = sim.stateHash();
+        while (sim.tick() < TICKS && !sim.isGameOver()) {
+            for (int id = 1; id <= PLAYERS; id++) {
+                if (random.nextInt(4) == 0) {
+                    sim.postInput(id, MOVES[random.nextInt(MOVES.length)] | (random.nextInt(200) == 0 ? World.BOMB : 0));
+                }
+            }
+            if (sim.tick() == 700) {
+                sim.removePlayer(PLAYERS);
+                recorder.leave(PLAYERS);
+            }
+            sim.step();
+            hashes[(int) sim.tick()] = sim.stateHash();
+            recorder.endTick();
+        }
+        recorder.finish();
+        archive.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            return Replay.load(files.findFirst().orElseThrow());
+        }
+    }
+
+    @Test
+    void seekMatchesStraightPlay() throws IOException {
+        Replay replay = record();
+        assertTrue(replay.isComplete());
+        assertTrue(replay.keyframeCount() >= 2, "ключевых кадров: " + replay.keyframeCount());
+
+        Replay.Cursor straight = replay.start();
+        for (long tick = 1; tick <= replay.endTick(); tick++) {
+            straight.advanceTo(tick);
+            assertEquals(hashes[(int) tick], straight.simulation().stateHash(), "тик " + tick);
+        }
+
+        Replay.Cursor cursor = replay.start();
+        Random random = new Random(5);
+        for (int i = 0; i < 100; i++) {
+            long target = random.nextInt((int) replay.endTick() + 1);
+            cursor.seek(target);
+            assertEquals(target, cursor.tick());
+            assertEquals(hashes[(int) target], cursor.simulation().stateHash(), "переход на тик " + target);
+        }
+    }
+
+    @Test
+    void fullPlayVerifiesFinalHash() throws IOException {
+        Replay replay = record();
+        Simulation sim = replay.play();
+        assertEquals(replay.endTick(), sim.tick());
+        assertEquals(hashes[(int) sim.tick()], sim.stateHash());
+    }
+}